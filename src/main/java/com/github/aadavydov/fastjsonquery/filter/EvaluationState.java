@@ -23,37 +23,36 @@
  *
  */
 
-package com.github.aadavydov.fastjsonquery.filter.computer.struct;
+package com.github.aadavydov.fastjsonquery.filter;
 
-import com.github.aadavydov.fastjsonquery.filter.computer.ComplexOperatorComputer;
-import com.github.aadavydov.fastjsonquery.filter.predicate.ComplexPredicate;
-import com.github.aadavydov.fastjsonquery.filter.predicate.Predicate;
+import com.github.aadavydov.fastjsonquery.filter.predicate.PredicateState;
+import com.github.aadavydov.fastjsonquery.filter.variable.VariableCommander;
 
-public abstract class StructuralComputer implements ComplexOperatorComputer {
-
-    abstract boolean getTriggerValue();
+/**
+ * Everything one evaluation of a {@link JsonPredicateComputer} changes: the
+ * position in the document and the results found so far. States are created
+ * by {@link JsonPredicateComputer#newState()} and may be reused for any number
+ * of documents, one at a time.
+ */
+public final class EvaluationState {
 
-    @Override
-    public final void compute(ComplexPredicate complexPredicate) {
+    final VariableCommander commander;
+    final PredicateState predicates;
+    final NumberCollector numbers = new NumberCollector();
+    final StringCollector strings;
 
-        boolean trigger = getTriggerValue();
+    EvaluationState(VariableCommander commander, PredicateState predicates) {
+        this.commander = commander;
+        this.predicates = predicates;
+        this.strings = new StringCollector(predicates);
+    }
 
-        int alreadyCalculatedChildNodes = 0;
-        // Обходим всех детей
-        for (Predicate node : complexPredicate.getChildren()) {
-            if (!node.getNeedToBeCalculated()) {
-                alreadyCalculatedChildNodes++;
-                if (node.getPredicateValue() == trigger) {
-                    complexPredicate.setNeedToBeCalculated(false);
-                    complexPredicate.setPredicateValue(trigger);
-                    return;
-                }
-            }
-        }
-        if (alreadyCalculatedChildNodes == complexPredicate.getChildren().size()) {
-            complexPredicate.setNeedToBeCalculated(false);
-            complexPredicate.setPredicateValue(!trigger);
-        }
+    /**
+     * Prepares this state for a new document.
+     */
+    public void reset() {
+        commander.reset();
+        predicates.reset();
     }
 
 }
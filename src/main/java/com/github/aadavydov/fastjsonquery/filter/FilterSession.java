@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter;
+
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.CharBufferJsonReader;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.NeedMoreInputException;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.PushJsonReader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evaluates a UTF-8 document pushed chunk by chunk, as it arrives from a
+ * non-blocking channel. Each {@link #feed(ByteBuffer)} parses as far as the
+ * bytes go and returns {@link Status#NEED_MORE} instead of blocking, so the
+ * result may be known long before the whole document has arrived. Malformed
+ * UTF-8 is rejected as by {@link JsonFilter}.
+ * <p>
+ * A session evaluates with a state of its own, so sessions on different
+ * threads may share a {@link JsonPredicateComputer}; a session itself is
+ * used by one thread at a time.
+ */
+public class FilterSession {
+
+    public enum Status {
+        MATCH, NO_MATCH, NEED_MORE
+    }
+
+    private final JsonPredicateComputer jsonPredicateComputer;
+    private final EvaluationState state;
+    private final PushJsonReader reader;
+    private Status status;
+    private boolean moreTokens;
+
+    public FilterSession(JsonPredicateComputer jsonPredicateComputer) {
+        this(jsonPredicateComputer, CharBufferJsonReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    public FilterSession(JsonPredicateComputer jsonPredicateComputer, int bufferSize) {
+        this.jsonPredicateComputer = jsonPredicateComputer;
+        this.state = jsonPredicateComputer.newState();
+        this.reader = new PushJsonReader(StandardCharsets.UTF_8, bufferSize);
+        reset(false);
+    }
+
+    /**
+     * Starts a new document.
+     */
+    public void reset(boolean lenient) {
+        state.reset();
+        reader.reset();
+        reader.setLenient(lenient);
+        moreTokens = true;
+        status = Status.NEED_MORE;
+        if (!jsonPredicateComputer.getNeedToBeCalculated(state)) {
+            decide();
+        }
+    }
+
+    /**
+     * Parses the bytes between the position and the limit of {@code chunk}.
+     * Once the result is known, further chunks are left untouched. Otherwise
+     * the chunk is consumed entirely and may be reused when this returns.
+     */
+    public Status feed(ByteBuffer chunk) throws Exception {
+        if (status != Status.NEED_MORE) {
+            return status;
+        }
+        reader.feed(chunk);
+        return advance();
+    }
+
+    /**
+     * Signals the end of the document. A document that ends before the result
+     * is known is malformed and makes this throw, as it would when read whole.
+     */
+    public Status finish() throws Exception {
+        if (status != Status.NEED_MORE) {
+            return status;
+        }
+        reader.endOfInput();
+        return advance();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    private Status advance() throws Exception {
+        try {
+            if (reader.resumeSkip()) {
+                moreTokens = jsonPredicateComputer.needsMoreTokens(state);
+            }
+            while (moreTokens) {
+                reader.mark();
+                moreTokens = jsonPredicateComputer.processToken(reader, state);
+            }
+        } catch (NeedMoreInputException e) {
+            reader.rewind();
+            return status;
+        }
+        return decide();
+    }
+
+    private Status decide() {
+        status = jsonPredicateComputer.complete(state) ? Status.MATCH : Status.NO_MATCH;
+        return status;
+    }
+
+}
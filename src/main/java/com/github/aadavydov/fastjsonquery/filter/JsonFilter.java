@@ -25,31 +25,242 @@
 
 package com.github.aadavydov.fastjsonquery.filter;
 
+import com.github.aadavydov.fastjsonquery.jsonutils.CustomJsonReader;
 import com.github.aadavydov.fastjsonquery.jsonutils.reader.CharBufferJsonReader;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.MappedCharSource;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.StreamCharSource;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.StructuralIndex;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.Utf8JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 
+/**
+ * Applies a {@link JsonPredicateComputer} to whole documents. Byte input must
+ * be UTF-8: whichever way the bytes are passed, the first malformed sequence
+ * read throws {@link java.nio.charset.MalformedInputException}. Input past the
+ * point where the result is known is not read, so it is not checked either.
+ */
 public class JsonFilter {
 
+    /**
+     * Receives the result for every value of a sequence, in order.
+     */
+    public interface DocumentListener {
+
+        void onDocument(long index, boolean match) throws IOException;
+
+    }
+
     private final JsonPredicateComputer jsonPredicateComputer;
-    private final CharBufferJsonReader byteBufferJsonReader = new CharBufferJsonReader(StandardCharsets.UTF_8);
+    private final EvaluationState state;
+    private final CharBufferJsonReader byteBufferJsonReader;
+    private final Utf8JsonReader utf8JsonReader = new Utf8JsonReader();
+    private final int bufferSize;
+    private StreamCharSource streamSource = null;
+    private MappedCharSource mappedSource = null;
 
     public JsonFilter(JsonPredicateComputer jsonPredicateComputer) {
+        this(jsonPredicateComputer, CharBufferJsonReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param bufferSize size of the byte and char buffers used for streamed
+     *                   input; they are allocated once and reused by every call
+     */
+    public JsonFilter(JsonPredicateComputer jsonPredicateComputer, int bufferSize) {
         this.jsonPredicateComputer = jsonPredicateComputer;
+        this.state = jsonPredicateComputer.newState();
+        this.byteBufferJsonReader = new CharBufferJsonReader(StandardCharsets.UTF_8, bufferSize);
+        this.bufferSize = bufferSize;
     }
 
+    /**
+     * Evaluates UTF-8 encoded JSON. Bytes are tokenized as is, only the strings
+     * reaching the predicates are decoded.
+     */
     public boolean apply(byte[] buf, boolean lenient) throws Exception {
-        jsonPredicateComputer.reset();
+        state.reset();
+        utf8JsonReader.setup(buf);
+        utf8JsonReader.setLenient(lenient);
+        return jsonPredicateComputer.processJson(utf8JsonReader, state);
+    }
+
+    /**
+     * Evaluates UTF-8 encoded JSON held in {@code len} bytes of {@code buf}
+     * starting at {@code off}, in place.
+     */
+    public boolean apply(byte[] buf, int off, int len, boolean lenient) throws Exception {
+        state.reset();
+        utf8JsonReader.setup(buf, off, len);
+        utf8JsonReader.setLenient(lenient);
+        return jsonPredicateComputer.processJson(utf8JsonReader, state);
+    }
+
+    /**
+     * Evaluates UTF-8 encoded JSON with the help of {@code index}, built over
+     * {@code buf} beforehand. Worth it when the same document goes through
+     * several filters: values a filter does not look at are jumped over.
+     */
+    public boolean apply(byte[] buf, StructuralIndex index, boolean lenient) throws Exception {
+        state.reset();
+        utf8JsonReader.setup(buf, 0, buf.length, index);
+        utf8JsonReader.setLenient(lenient);
+        return jsonPredicateComputer.processJson(utf8JsonReader, state);
+    }
+
+    /**
+     * Evaluates UTF-8 encoded JSON between the position and the limit of
+     * {@code buf}, in place. Heap buffers are tokenized as bytes, direct ones
+     * are decoded window by window. The buffer position is left untouched.
+     */
+    public boolean apply(ByteBuffer buf, boolean lenient) throws Exception {
+        if (buf.hasArray()) {
+            return apply(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), lenient);
+        }
+        state.reset();
         byteBufferJsonReader.setup(buf);
         byteBufferJsonReader.setLenient(lenient);
-        return jsonPredicateComputer.processJson(byteBufferJsonReader);
+        return jsonPredicateComputer.processJson(byteBufferJsonReader, state);
+    }
+
+    /**
+     * Evaluates UTF-8 encoded JSON scattered over {@code bufs}, in order. The
+     * buffer positions are left untouched.
+     */
+    public boolean apply(ByteBuffer[] bufs, boolean lenient) throws Exception {
+        if (bufs.length == 1) {
+            return apply(bufs[0], lenient);
+        }
+        state.reset();
+        byteBufferJsonReader.setup(bufs);
+        byteBufferJsonReader.setLenient(lenient);
+        return jsonPredicateComputer.processJson(byteBufferJsonReader, state);
     }
 
     public boolean apply(String s, boolean lenient) throws Exception {
-        jsonPredicateComputer.reset();
+        state.reset();
         byteBufferJsonReader.setup(s);
         byteBufferJsonReader.setLenient(lenient);
-        return jsonPredicateComputer.processJson(byteBufferJsonReader);
+        return jsonPredicateComputer.processJson(byteBufferJsonReader, state);
+    }
+
+    /**
+     * Evaluates UTF-8 encoded JSON read from {@code in}. Reading stops as soon
+     * as the result is known; the stream is left open and positioned
+     * {@link #getBytesConsumed()} bytes past where it was, so the caller can
+     * drain or discard the rest.
+     */
+    public boolean apply(InputStream in, boolean lenient) throws Exception {
+        StreamCharSource source = streamSource();
+        source.reset(in);
+        return applyStream(source, lenient);
+    }
+
+    /**
+     * Same as {@link #apply(InputStream, boolean)} for a blocking channel.
+     */
+    public boolean apply(ReadableByteChannel in, boolean lenient) throws Exception {
+        StreamCharSource source = streamSource();
+        source.reset(in);
+        return applyStream(source, lenient);
+    }
+
+    /**
+     * Evaluates a UTF-8 encoded JSON file through memory-mapped segments,
+     * without copying it to the heap. Only the part of the file preceding the
+     * decision is paged in. The channel is left open.
+     */
+    public boolean applyMapped(FileChannel file, boolean lenient) throws Exception {
+        if (mappedSource == null) {
+            mappedSource = new MappedCharSource(StandardCharsets.UTF_8);
+        }
+        mappedSource.reset(file);
+        try {
+            state.reset();
+            byteBufferJsonReader.setup(mappedSource);
+            byteBufferJsonReader.setLenient(lenient);
+            return jsonPredicateComputer.processJson(byteBufferJsonReader, state);
+        } finally {
+            mappedSource.close();
+        }
+    }
+
+    /**
+     * Evaluates every top-level value of UTF-8 encoded {@code buf}, where values
+     * may be concatenated, separated by whitespace or be an RFC 7464 JSON text
+     * sequence. The rest of a value is skipped once it is decided.
+     *
+     * @return the number of matching values
+     */
+    public long applySequence(byte[] buf, boolean lenient, DocumentListener listener) throws Exception {
+        utf8JsonReader.setup(buf);
+        utf8JsonReader.setLenient(lenient);
+        utf8JsonReader.setDocumentSequence(true);
+        try {
+            return applySequence(utf8JsonReader, listener);
+        } finally {
+            utf8JsonReader.setDocumentSequence(false);
+        }
+    }
+
+    /**
+     * Same as {@link #applySequence(byte[], boolean, DocumentListener)} for a
+     * stream, read up to its end. The stream is left open.
+     */
+    public long applySequence(InputStream in, boolean lenient, DocumentListener listener) throws Exception {
+        StreamCharSource source = streamSource();
+        source.reset(in);
+        byteBufferJsonReader.setup(source);
+        byteBufferJsonReader.setLenient(lenient);
+        byteBufferJsonReader.setDocumentSequence(true);
+        try {
+            return applySequence(byteBufferJsonReader, listener);
+        } finally {
+            byteBufferJsonReader.setDocumentSequence(false);
+        }
+    }
+
+    private long applySequence(CustomJsonReader in, DocumentListener listener) throws Exception {
+        long index = 0;
+        long matches = 0;
+        while (in.peek() != JsonToken.END_DOCUMENT) {
+            state.reset();
+            boolean match = jsonPredicateComputer.processJson(in, state);
+            in.skipToDocumentEnd();
+            if (match) {
+                matches++;
+            }
+            listener.onDocument(index++, match);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the number of bytes taken from the stream or channel by the last
+     * streamed {@code apply} call.
+     */
+    public long getBytesConsumed() {
+        return streamSource == null ? 0 : streamSource.getBytesConsumed();
+    }
+
+    private boolean applyStream(StreamCharSource source, boolean lenient) throws Exception {
+        state.reset();
+        byteBufferJsonReader.setup(source);
+        byteBufferJsonReader.setLenient(lenient);
+        return jsonPredicateComputer.processJson(byteBufferJsonReader, state);
+    }
+
+    private StreamCharSource streamSource() {
+        if (streamSource == null) {
+            streamSource = new StreamCharSource(StandardCharsets.UTF_8, bufferSize);
+        }
+        return streamSource;
     }
 
 }
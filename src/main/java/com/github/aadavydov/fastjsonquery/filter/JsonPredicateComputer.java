@@ -25,77 +25,139 @@
 
 package com.github.aadavydov.fastjsonquery.filter;
 
-import com.github.aadavydov.fastjsonquery.filter.predicate.ComplexPredicate;
 import com.github.aadavydov.fastjsonquery.filter.predicate.PathValueReciever;
 import com.github.aadavydov.fastjsonquery.filter.predicate.PathVisitor;
 import com.github.aadavydov.fastjsonquery.filter.predicate.Predicate;
+import com.github.aadavydov.fastjsonquery.filter.predicate.PredicateProgram;
+import com.github.aadavydov.fastjsonquery.filter.predicate.SpecializedRecievers;
 import com.github.aadavydov.fastjsonquery.filter.value.*;
 import com.github.aadavydov.fastjsonquery.filter.variable.AbstractNode;
 import com.github.aadavydov.fastjsonquery.filter.variable.VariableCommander;
+import com.github.aadavydov.fastjsonquery.filter.variable.VariableTree;
 import com.github.aadavydov.fastjsonquery.jsonutils.CustomJsonReader;
 import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
 import java.util.List;
 
 public class JsonPredicateComputer {
 
     private final Predicate tree;
-    private final VariableCommander commander;
+    private final VariableTree variables;
+    private final PredicateProgram program;
+    /* Per node, its compiled recievers, or null if they cannot be compiled */
+    private final SpecializedRecievers[] compiled;
+    /* Whether any value is tested through the compiled recievers, or only strings */
+    private final boolean specialized;
+    /* The state of the methods that take none */
+    private final EvaluationState state;
 
     public JsonPredicateComputer(Predicate tree) {
+        this(tree, false);
+    }
+
+    /**
+     * @param specialized whether the comparisons of a path with a constant are
+     *                    compiled into tests of the value of the path, instead
+     *                    of being interpreted through the predicate tree.
+     *                    A string is tested that way, in place in the input,
+     *                    whatever the flag.
+     */
+    public JsonPredicateComputer(Predicate tree, boolean specialized) {
         this.tree = tree;
-        commander = new VariableCommander(tree);
+        program = PredicateProgram.compile(tree);
+        variables = new VariableTree(tree);
+        compiled = new SpecializedRecievers[variables.getNodeCount()];
+        compile(variables.getRoot());
+        this.specialized = specialized;
+        state = newState();
+    }
+
+    private void compile(AbstractNode<?> node) {
+        compiled[node.getId()] = SpecializedRecievers.compile(node.getRecievers());
+        for (int i = 0; i <= node.getMaxIndex(); i++) {
+            if (node.getIndexedChild(i) != null) {
+                compile(node.getIndexedChild(i));
+            }
+        }
+        for (int slot = 0; slot < node.getNames().size(); slot++) {
+            compile(node.getNamedChild(slot));
+        }
+    }
+
+    /**
+     * Returns a new state to evaluate this query with. A computer is not
+     * changed by an evaluation with a state of its own, so threads may share
+     * it, each using its own states.
+     */
+    public EvaluationState newState() {
+        return new EvaluationState(new VariableCommander(variables), program.newState());
     }
 
     public boolean getResult() {
-        return tree.getPredicateValue();
+        return getResult(state);
+    }
+
+    public boolean getResult(EvaluationState state) {
+        return tree.getPredicateValue(state.predicates);
     }
 
     public boolean getNeedToBeCalculated() {
-        return tree.getNeedToBeCalculated();
+        return getNeedToBeCalculated(state);
     }
 
-    private void processVariable(AbstractNode currentPosition, Value unknownValue) throws Exception {
+    public boolean getNeedToBeCalculated(EvaluationState state) {
+        return tree.getNeedToBeCalculated(state.predicates);
+    }
+
+    private void processVariable(AbstractNode currentPosition, Value unknownValue, EvaluationState state) throws Exception {
+        if (specialized && compiled[currentPosition.getId()] != null) {
+            compiled[currentPosition.getId()].setValue(state.predicates, unknownValue);
+            return;
+        }
         List<PathValueReciever> recievers = currentPosition.getRecievers();
         if (recievers != null) {
             for (PathValueReciever predicate : recievers) {
-                predicate.setValue(unknownValue);
+                predicate.setValue(state.predicates, unknownValue);
             }
         }
     }
 
-    private void processPath(AbstractNode currentPosition) throws Exception {
+    private void processPath(AbstractNode currentPosition, EvaluationState state) throws Exception {
         List<PathVisitor> visitors = currentPosition.getVisitors();
         if (visitors != null) {
             for (PathVisitor visitor : visitors) {
-                visitor.visitPath();
+                visitor.visitPath(state.predicates);
             }
         }
     }
 
     public void reset() {
-        commander.reset();
-        tree.resetNode();
-        if (tree instanceof ComplexPredicate) {
-            ((ComplexPredicate) tree).traverceChilds((n) -> {
-                n.resetNode();
-                return true;
-            });
-        }
+        state.reset();
     }
 
-    private void processPrimitive(JsonToken peek, CustomJsonReader in) throws Exception {
+    private void processPrimitive(JsonToken peek, CustomJsonReader in, EvaluationState state) throws Exception {
+        VariableCommander commander = state.commander;
         AbstractNode currentPosition = commander.valueBegin();
 
         if (currentPosition != null) {
-            processPath(currentPosition);
+            processPath(currentPosition, state);
             Value v;
             switch (peek) {
                 case STRING:
-                    v = new StringValue(in.nextString());
+                    SpecializedRecievers recievers = compiled[currentPosition.getId()];
+                    if (recievers != null) {
+                        // compared where it is read, it is never made a value
+                        state.strings.recievers = recievers;
+                        in.nextString(state.strings);
+                        v = null;
+                    } else {
+                        v = new StringValue(in.nextString());
+                    }
                     break;
                 case NUMBER:
-                    v = new NumberValue(in.nextString());
+                    in.nextNumber(state.numbers);
+                    v = state.numbers.value;
                     break;
                 case BOOLEAN:
                     v = BooleanValue.forValue(in.nextBoolean());
@@ -107,91 +169,175 @@ public class JsonPredicateComputer {
                 default:
                     throw new IllegalStateException();
             }
-            processVariable(currentPosition, v);
+            if (v != null) {
+                processVariable(currentPosition, v, state);
+            }
             commander.valueEnd();
+            skipCompleted(in, state);
         } else {
+            skipValue(in, state);
+        }
+
+    }
+
+    /**
+     * Skips the rest of the arrays and objects the commander has left because
+     * nothing more is queried in them.
+     */
+    private void skipCompleted(CustomJsonReader in, EvaluationState state) throws IOException {
+        VariableCommander commander = state.commander;
+        int left = commander.leaveCompleted(state.predicates);
+        if (commander.hasMoreVariables()) {
+            if (left > 0) {
+                in.skipRemaining(left);
+            }
+            skipElements(in, commander);
+        }
+    }
+
+    /**
+     * Skips the next value, together with the rest of the arrays and objects
+     * around it the commander has left.
+     */
+    private void skipValue(CustomJsonReader in, EvaluationState state) throws IOException {
+        VariableCommander commander = state.commander;
+        int left = commander.leaveCompleted(state.predicates);
+        if (left == 0) {
             in.skipValue();
+        } else if (commander.hasMoreVariables()) {
+            in.skipRemaining(left);
+        }
+        if (commander.hasMoreVariables()) {
+            skipElements(in, commander);
         }
+    }
 
+    /**
+     * Skips the elements of the current array up to the next one queried, as
+     * far as the reader can do it without tokenizing them.
+     */
+    private void skipElements(CustomJsonReader in, VariableCommander commander) throws IOException {
+        int count = commander.elementsToSkip();
+        if (count > 0) {
+            commander.elementsSkipped(in.skipElements(count));
+        }
     }
 
     public boolean processJson(CustomJsonReader in) throws Exception {
+        return processJson(in, state);
+    }
 
-        if (!tree.getNeedToBeCalculated()) {
-            return tree.getPredicateValue();
+    /**
+     * Evaluates the query on the next value of {@code in} with {@code state},
+     * which has to be reset before each value.
+     */
+    public boolean processJson(CustomJsonReader in, EvaluationState state) throws Exception {
+
+        if (!tree.getNeedToBeCalculated(state.predicates)) {
+            return tree.getPredicateValue(state.predicates);
+        }
+
+        while (processToken(in, state)) {
+            // until the root value ends or the result is known
         }
 
-        String lastName;
+        return complete(state);
+
+    }
+
+    /**
+     * Consumes the next token. A value that is skipped is always skipped last,
+     * after the commander has been updated, and a token is consumed before the
+     * commander and the predicates see it, so a push parser may repeat a call
+     * interrupted by lack of input, or finish the skip alone.
+     *
+     * @return true while more tokens are needed
+     */
+    boolean processToken(CustomJsonReader in, EvaluationState state) throws Exception {
+
+        VariableCommander commander = state.commander;
         AbstractNode currentPosition;
-        do {
-            JsonToken peek = in.peek();
-            switch (peek) {
-                case STRING:
-                case NUMBER:
-                case BOOLEAN:
-                case NULL:
-                    processPrimitive(peek, in);
-                    break;
-                case NAME:
-                    lastName = in.nextName();
-                    if (!commander.nextName(lastName)) {
-                        in.skipValue();
-                    }
-                    break;
-                case BEGIN_OBJECT:
-                    currentPosition = commander.valueBegin();
+        JsonToken peek = in.peek();
+        switch (peek) {
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                processPrimitive(peek, in, state);
+                break;
+            case NAME:
+                if (!commander.nextName(in.nextNameSlot(commander.currentNames()))) {
+                    in.skipValue();
+                }
+                break;
+            case BEGIN_OBJECT:
+                currentPosition = commander.valueBegin();
 
-                    if (currentPosition == null) {
-                        in.skipValue();
+                if (currentPosition == null) {
+                    skipValue(in, state);
+                } else {
+                    processPath(currentPosition, state);
+                    if (currentPosition.hasNamedChildren()) {
+                        in.beginObject();
+                        commander.beginObject();
                     } else {
-                        processPath(currentPosition);
-                        if (currentPosition.hasChildren()) {
-                            in.beginObject();
-                        } else {
-                            in.skipValue();
-                            commander.valueEnd();
-                        }
+                        commander.valueEnd();
+                        skipValue(in, state);
                     }
+                }
 
-                    break;
-                case END_OBJECT:
-                    in.endObject();
-                    commander.valueEnd();
-                    break;
-                case BEGIN_ARRAY:
-                    currentPosition = commander.valueBegin();
+                break;
+            case END_OBJECT:
+                in.endObject();
+                commander.endObject();
+                commander.valueEnd();
+                skipCompleted(in, state);
+                break;
+            case BEGIN_ARRAY:
+                currentPosition = commander.valueBegin();
 
-                    if (currentPosition == null) {
-                        in.skipValue();
+                if (currentPosition == null) {
+                    skipValue(in, state);
+                } else {
+                    processPath(currentPosition, state);
+                    if (currentPosition.hasIndexedChildren()) {
+                        in.beginArray();
+                        commander.beginArray();
+                        skipElements(in, commander);
                     } else {
-                        processPath(currentPosition);
-                        if (currentPosition.hasChildren()) {
-                            in.beginArray();
-                            commander.beginArray();
-                        } else {
-                            in.skipValue();
-                            commander.valueEnd();
-                        }
+                        commander.valueEnd();
+                        skipValue(in, state);
                     }
-                    break;
-                case END_ARRAY:
-                    in.endArray();
-                    commander.endArray();
-                    commander.valueEnd();
-                    break;
-                case END_DOCUMENT:
-                    break;
-                default:
-                    throw new IllegalStateException();
-            }
-        } while (commander.hasMoreVariables() && tree.getNeedToBeCalculated());
-
-        if (tree.getNeedToBeCalculated()) {
-            tree.toDefaultIfNotCalculated();
+                }
+                break;
+            case END_ARRAY:
+                in.endArray();
+                commander.endArray();
+                commander.valueEnd();
+                skipCompleted(in, state);
+                break;
+            case END_DOCUMENT:
+                break;
+            default:
+                throw new IllegalStateException();
         }
 
-        return tree.getPredicateValue();
+        return needsMoreTokens(state);
+    }
+
+    boolean needsMoreTokens(EvaluationState state) {
+        return state.commander.hasMoreVariables() && tree.getNeedToBeCalculated(state.predicates);
+    }
+
+    /**
+     * Settles the predicates still undecided once no more tokens are needed.
+     */
+    boolean complete(EvaluationState state) {
+        if (tree.getNeedToBeCalculated(state.predicates)) {
+            tree.toDefaultIfNotCalculated(state.predicates);
+        }
 
+        return tree.getPredicateValue(state.predicates);
     }
 
 }
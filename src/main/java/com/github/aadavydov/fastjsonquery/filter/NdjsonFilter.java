@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter;
+
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.Utf8JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Filters newline-delimited JSON (NDJSON, JSON Lines) encoded in UTF-8. Each
+ * line is evaluated in place with the same reader and computer: nothing is
+ * allocated per record, and once a record is decided the rest of it is not
+ * tokenized. Blank lines are ignored and a trailing {@code '\r'} is not part of
+ * a record.
+ */
+public class NdjsonFilter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives the matching records, in input order.
+     */
+    public interface MatchListener {
+
+        /**
+         * @param data   holds the record, without its line terminator; only valid
+         *               during the call
+         * @param offset of the record in {@code data}
+         * @param length of the record
+         */
+        void onMatch(byte[] data, int offset, int length) throws IOException;
+
+    }
+
+    private final JsonPredicateComputer jsonPredicateComputer;
+    private final EvaluationState state;
+    private final Utf8JsonReader utf8JsonReader = new Utf8JsonReader();
+    private final int bufferSize;
+    private byte[] streamBuffer = null;
+
+    public NdjsonFilter(JsonPredicateComputer jsonPredicateComputer) {
+        this(jsonPredicateComputer, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize initial size of the buffer used for streamed input; it
+     *                   grows to hold the longest line
+     */
+    public NdjsonFilter(JsonPredicateComputer jsonPredicateComputer, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize <= 0");
+        }
+        this.jsonPredicateComputer = jsonPredicateComputer;
+        this.state = jsonPredicateComputer.newState();
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Evaluates every record of {@code buf}.
+     *
+     * @return the number of matching records
+     */
+    public long apply(byte[] buf, boolean lenient, MatchListener listener) throws Exception {
+        return apply(buf, 0, buf.length, lenient, listener);
+    }
+
+    /**
+     * Evaluates every record held in {@code len} bytes of {@code buf} starting at
+     * {@code off}. The last record needs no line terminator.
+     *
+     * @return the number of matching records
+     */
+    public long apply(byte[] buf, int off, int len, boolean lenient, MatchListener listener) throws Exception {
+        int end = off + len;
+        long matches = 0;
+        int start = off;
+        while (start < end) {
+            int lineEnd = indexOfNewline(buf, start, end);
+            if (lineEnd < 0) {
+                lineEnd = end;
+            }
+            matches += evaluate(buf, start, lineEnd, lenient, listener);
+            start = lineEnd + 1;
+        }
+        return matches;
+    }
+
+    /**
+     * Evaluates every record read from {@code in}, up to its end. The stream is
+     * left open.
+     *
+     * @return the number of matching records
+     */
+    public long apply(InputStream in, boolean lenient, MatchListener listener) throws Exception {
+        byte[] buf = streamBuffer();
+        int start = 0;
+        int scanned = 0;
+        int limit = 0;
+        long matches = 0;
+        while (true) {
+            int lineEnd = indexOfNewline(buf, scanned, limit);
+            if (lineEnd >= 0) {
+                matches += evaluate(buf, start, lineEnd, lenient, listener);
+                start = scanned = lineEnd + 1;
+                continue;
+            }
+
+            // an incomplete line: make room behind it and read on
+            if (start > 0) {
+                limit -= start;
+                System.arraycopy(buf, start, buf, 0, limit);
+                start = 0;
+            } else if (limit == buf.length) {
+                buf = streamBuffer = Arrays.copyOf(buf, buf.length * 2);
+            }
+            scanned = limit;
+
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                if (limit > 0) {
+                    matches += evaluate(buf, 0, limit, lenient, listener);
+                }
+                return matches;
+            }
+            limit += n;
+        }
+    }
+
+    /**
+     * Copies every record of {@code in} that matches to {@code out}, each
+     * followed by {@code '\n'}. Neither stream is closed.
+     *
+     * @return the number of matching records
+     */
+    public long apply(InputStream in, OutputStream out, boolean lenient) throws Exception {
+        return apply(in, lenient, (data, offset, length) -> {
+            out.write(data, offset, length);
+            out.write('\n');
+        });
+    }
+
+    private int evaluate(byte[] buf, int start, int lineEnd, boolean lenient, MatchListener listener) throws Exception {
+        int end = lineEnd;
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+
+        int first = start;
+        while (first < end && isWhitespace(buf[first])) {
+            first++;
+        }
+        if (first == end) {
+            return 0;
+        }
+
+        state.reset();
+        utf8JsonReader.setup(buf, first, end - first);
+        utf8JsonReader.setLenient(lenient);
+        if (!jsonPredicateComputer.processJson(utf8JsonReader, state)) {
+            return 0;
+        }
+        listener.onMatch(buf, start, end - start);
+        return 1;
+    }
+
+    private static int indexOfNewline(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private byte[] streamBuffer() {
+        if (streamBuffer == null) {
+            streamBuffer = new byte[bufferSize];
+        }
+        return streamBuffer;
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter;
+
+import com.github.aadavydov.fastjsonquery.filter.value.NumberValue;
+import com.github.aadavydov.fastjsonquery.jsonutils.NumberSink;
+
+/**
+ * Makes a {@link NumberValue} of the number a reader hands over.
+ */
+final class NumberCollector implements NumberSink {
+
+    NumberValue value;
+
+    @Override
+    public void number(long value) {
+        this.value = new NumberValue(value);
+    }
+
+    @Override
+    public void number(char[] chars, int start, int length) {
+        this.value = new NumberValue(chars, start, length);
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter;
+
+import com.github.aadavydov.fastjsonquery.filter.predicate.PredicateState;
+import com.github.aadavydov.fastjsonquery.filter.predicate.SpecializedRecievers;
+import com.github.aadavydov.fastjsonquery.jsonutils.StringSink;
+
+import java.util.Arrays;
+
+/**
+ * Hands the string a reader passes over to the compiled recievers of its
+ * path, comparing it part by part when it comes in parts.
+ */
+final class StringCollector implements StringSink {
+
+    private final PredicateState predicates;
+    SpecializedRecievers recievers;
+    /* For a string handed over in parts, see SpecializedRecievers.compareString */
+    private int[] comparisons = new int[4];
+    private int length;
+
+    StringCollector(PredicateState predicates) {
+        this.predicates = predicates;
+    }
+
+    @Override
+    public void string(char[] chars, int start, int length) {
+        recievers.setString(predicates, chars, start, length);
+    }
+
+    @Override
+    public void string(byte[] utf8, int start, int length) {
+        recievers.setString(predicates, utf8, start, length);
+    }
+
+    @Override
+    public void begin() {
+        if (comparisons.length < recievers.size()) {
+            comparisons = new int[recievers.size()];
+        }
+        Arrays.fill(comparisons, 0, recievers.size(), 0);
+        length = 0;
+    }
+
+    @Override
+    public boolean part(char[] chars, int start, int length) {
+        boolean open = recievers.compareString(predicates, comparisons, this.length, chars, start, length);
+        this.length += length;
+        return open;
+    }
+
+    @Override
+    public void end() {
+        recievers.setString(predicates, comparisons, length);
+    }
+
+}
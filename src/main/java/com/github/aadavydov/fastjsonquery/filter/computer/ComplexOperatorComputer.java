@@ -25,8 +25,12 @@
 
 package com.github.aadavydov.fastjsonquery.filter.computer;
 
-import com.github.aadavydov.fastjsonquery.filter.predicate.ComplexPredicate;
-
 public interface ComplexOperatorComputer {
-    public void compute(ComplexPredicate predicate);
+
+    /**
+     * Returns the value of a child which decides the operator at once, the
+     * other value decides it once all the children have it.
+     */
+    public boolean getTriggerValue();
+
 }
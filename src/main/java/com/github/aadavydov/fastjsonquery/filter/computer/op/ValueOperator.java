@@ -63,5 +63,24 @@ public enum ValueOperator {
         return computer;
     }
 
+    /**
+     * Returns the operator with the operands swapped: {@code a op b} is
+     * {@code b op.mirror() a}.
+     */
+    public ValueOperator mirror() {
+        switch (this) {
+            case GT:
+                return LT;
+            case GTE:
+                return LTE;
+            case LTE:
+                return GTE;
+            case LT:
+                return GT;
+            default:
+                return this;
+        }
+    }
+
 
 }
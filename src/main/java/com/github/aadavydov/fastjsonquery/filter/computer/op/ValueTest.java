@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.computer.op;
+
+import com.github.aadavydov.fastjsonquery.filter.value.Value;
+
+/**
+ * A comparison of a value with a constant, bound when the query is compiled.
+ * A string value may also be tested as it is in the input.
+ */
+public interface ValueTest {
+
+    public boolean test(Value value);
+
+    /**
+     * Tests the string of {@code length} chars from {@code start}.
+     */
+    public boolean test(char[] chars, int start, int length);
+
+    /**
+     * Tests the string of {@code length} bytes of UTF-8 from {@code start}.
+     */
+    public boolean test(byte[] utf8, int start, int length);
+
+    /**
+     * Compares a part of a string, {@code length} chars from {@code start}
+     * that stand at {@code offset} in the string, with the constant.
+     *
+     * @return 0 if the string may still equal the constant, or else a value of
+     * the sign of the comparison of the string with the constant, which the
+     * rest of the string does not change
+     */
+    public int compare(int offset, char[] chars, int start, int length);
+
+    /**
+     * Tests a string of {@code length} chars by the result of
+     * {@link #compare(int, char[], int, int)} for its parts.
+     */
+    public boolean test(int comparison, int length);
+
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.computer.op;
+
+import com.github.aadavydov.fastjsonquery.filter.value.*;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binds a {@link ValueOperator} to a constant with a test of the type of the
+ * constant, which compares a value of that type directly and gives the result
+ * of {@link Value} for a value of any other type. An integer constant has a
+ * test per operator, which compares a number held as a long inline.
+ */
+public final class ValueTests {
+
+    private ValueTests() {
+    }
+
+    /**
+     * Returns the test of {@code value operator constant}.
+     */
+    public static ValueTest forConstant(ValueOperator operator, Value constant) {
+        if (constant instanceof StringValue) {
+            return new StringTest(operator, ((StringValue) constant).getValue());
+        }
+        if (constant instanceof NumberValue) {
+            NumberValue number = (NumberValue) constant;
+            if (number.isLong()) {
+                switch (operator) {
+                    case GT:
+                        return new LongGreaterThan(number);
+                    case GTE:
+                        return new LongGreaterOrEqual(number);
+                    case EQ:
+                        return new LongEqual(number);
+                    case NEQ:
+                        return new LongNotEqual(number);
+                    case LTE:
+                        return new LongLessOrEqual(number);
+                    default:
+                        return new LongLessThan(number);
+                }
+            }
+            return new NumberTest(operator, number);
+        }
+        if (constant instanceof BooleanValue) {
+            return new BooleanTest(operator, (BooleanValue) constant);
+        }
+        if (constant instanceof NullValue) {
+            return new NullTest(operator);
+        }
+        throw new IllegalArgumentException("Unexpected constant " + constant);
+    }
+
+    private static boolean compared(ValueOperator operator, int comparison) {
+        switch (operator) {
+            case GT:
+                return comparison > 0;
+            case GTE:
+                return comparison >= 0;
+            case EQ:
+                return comparison == 0;
+            case NEQ:
+                return comparison != 0;
+            case LTE:
+                return comparison <= 0;
+            default:
+                return comparison < 0;
+        }
+    }
+
+    private static final class StringTest implements ValueTest {
+
+        private final ValueOperator operator;
+        private final String constant;
+        private final char[] chars;
+        private final byte[] utf8;
+
+        StringTest(ValueOperator operator, String constant) {
+            this.operator = operator;
+            this.constant = constant;
+            this.chars = constant.toCharArray();
+            this.utf8 = constant.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (!(value instanceof StringValue)) {
+                return operator == ValueOperator.NEQ;
+            }
+            String string = ((StringValue) value).getValue();
+            switch (operator) {
+                case EQ:
+                    return string.equals(constant);
+                case NEQ:
+                    return !string.equals(constant);
+                default:
+                    return compared(operator, string.compareTo(constant));
+            }
+        }
+
+        @Override
+        public boolean test(char[] string, int start, int length) {
+            switch (operator) {
+                case EQ:
+                    return equal(string, start, length);
+                case NEQ:
+                    return !equal(string, start, length);
+                default:
+                    return compared(operator, compare(string, start, length));
+            }
+        }
+
+        @Override
+        public boolean test(byte[] string, int start, int length) {
+            switch (operator) {
+                case EQ:
+                    return equal(string, start, length);
+                case NEQ:
+                    return !equal(string, start, length);
+                default:
+                    return compared(operator, compare(string, start, length));
+            }
+        }
+
+        @Override
+        public int compare(int offset, char[] string, int start, int length) {
+            for (int i = 0; i < length; i++) {
+                if (offset + i == chars.length) {
+                    return 1;
+                }
+                char c = string[start + i];
+                if (c != chars[offset + i]) {
+                    return c - chars[offset + i];
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean test(int comparison, int length) {
+            return compared(operator, comparison != 0 ? comparison : length - chars.length);
+        }
+
+        private boolean equal(char[] string, int start, int length) {
+            if (length != chars.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (string[start + i] != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean equal(byte[] string, int start, int length) {
+            if (length != utf8.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (string[start + i] != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /* As String.compareTo */
+        private int compare(char[] string, int start, int length) {
+            int common = Math.min(length, chars.length);
+            for (int i = 0; i < common; i++) {
+                char c = string[start + i];
+                if (c != chars[i]) {
+                    return c - chars[i];
+                }
+            }
+            return length - chars.length;
+        }
+
+        /*
+         * UTF-8 orders as code points, and String.compareTo as UTF-16 units.
+         * They only differ between a supplementary character (lead byte F0 to
+         * F4) and one from U+E000 (lead byte EE or EF), so those are decoded.
+         */
+        private int compare(byte[] string, int start, int length) {
+            int common = Math.min(length, utf8.length);
+            for (int i = 0; i < common; i++) {
+                int b = string[start + i] & 0xff;
+                int c = utf8[i] & 0xff;
+                if (b != c) {
+                    if (b >= 0xee && c >= 0xee) {
+                        return new String(string, start, length, StandardCharsets.UTF_8).compareTo(constant);
+                    }
+                    return b - c;
+                }
+            }
+            return length - utf8.length;
+        }
+
+    }
+
+    private static final class NumberTest implements ValueTest {
+
+        private final ValueOperator operator;
+        private final NumberValue constant;
+
+        NumberTest(ValueOperator operator, NumberValue constant) {
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (!(value instanceof NumberValue)) {
+                return operator == ValueOperator.NEQ;
+            }
+            NumberValue number = (NumberValue) value;
+            switch (operator) {
+                // as NumberValue, equality takes the scale into account
+                case EQ:
+                    return number.equalTo(constant);
+                case NEQ:
+                    return !number.equalTo(constant);
+                default:
+                    return compared(operator, number.compareTo(constant));
+            }
+        }
+
+        @Override
+        public boolean test(char[] chars, int start, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+        @Override
+        public boolean test(byte[] utf8, int start, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+        @Override
+        public int compare(int offset, char[] chars, int start, int length) {
+            return 1;
+        }
+
+        @Override
+        public boolean test(int comparison, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+    }
+
+    private abstract static class LongTest implements ValueTest {
+
+        final long constant;
+        final NumberValue number;
+
+        LongTest(NumberValue number) {
+            this.constant = number.longValue();
+            this.number = number;
+        }
+
+        @Override
+        public boolean test(char[] chars, int start, int length) {
+            return false;
+        }
+
+        @Override
+        public boolean test(byte[] utf8, int start, int length) {
+            return false;
+        }
+
+        @Override
+        public int compare(int offset, char[] chars, int start, int length) {
+            return 1;
+        }
+
+        @Override
+        public boolean test(int comparison, int length) {
+            return false;
+        }
+
+    }
+
+    private static final class LongGreaterThan extends LongTest {
+
+        LongGreaterThan(NumberValue number) {
+            super(number);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value instanceof NumberValue) {
+                NumberValue n = (NumberValue) value;
+                return n.isLong() ? n.longValue() > constant : n.compareTo(number) > 0;
+            }
+            return false;
+        }
+
+    }
+
+    private static final class LongGreaterOrEqual extends LongTest {
+
+        LongGreaterOrEqual(NumberValue number) {
+            super(number);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value instanceof NumberValue) {
+                NumberValue n = (NumberValue) value;
+                return n.isLong() ? n.longValue() >= constant : n.compareTo(number) >= 0;
+            }
+            return false;
+        }
+
+    }
+
+    private static final class LongEqual extends LongTest {
+
+        LongEqual(NumberValue number) {
+            super(number);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value instanceof NumberValue) {
+                NumberValue n = (NumberValue) value;
+                return n.isLong() ? n.longValue() == constant : n.equalTo(number);
+            }
+            return false;
+        }
+
+    }
+
+    /* The only one true for a value of another type */
+    private static final class LongNotEqual extends LongTest {
+
+        LongNotEqual(NumberValue number) {
+            super(number);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value instanceof NumberValue) {
+                NumberValue n = (NumberValue) value;
+                return n.isLong() ? n.longValue() != constant : !n.equalTo(number);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean test(char[] chars, int start, int length) {
+            return true;
+        }
+
+        @Override
+        public boolean test(byte[] utf8, int start, int length) {
+            return true;
+        }
+
+        @Override
+        public boolean test(int comparison, int length) {
+            return true;
+        }
+
+    }
+
+    private static final class LongLessOrEqual extends LongTest {
+
+        LongLessOrEqual(NumberValue number) {
+            super(number);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value instanceof NumberValue) {
+                NumberValue n = (NumberValue) value;
+                return n.isLong() ? n.longValue() <= constant : n.compareTo(number) <= 0;
+            }
+            return false;
+        }
+
+    }
+
+    private static final class LongLessThan extends LongTest {
+
+        LongLessThan(NumberValue number) {
+            super(number);
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value instanceof NumberValue) {
+                NumberValue n = (NumberValue) value;
+                return n.isLong() ? n.longValue() < constant : n.compareTo(number) < 0;
+            }
+            return false;
+        }
+
+    }
+
+    private static final class BooleanTest implements ValueTest {
+
+        private final ValueOperator operator;
+        private final BooleanValue constant;
+
+        BooleanTest(ValueOperator operator, BooleanValue constant) {
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (!(value instanceof BooleanValue)) {
+                return operator == ValueOperator.NEQ;
+            }
+            return compared(operator, Boolean.compare(((BooleanValue) value).isValue(), constant.isValue()));
+        }
+
+        @Override
+        public boolean test(char[] chars, int start, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+        @Override
+        public boolean test(byte[] utf8, int start, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+        @Override
+        public int compare(int offset, char[] chars, int start, int length) {
+            return 1;
+        }
+
+        @Override
+        public boolean test(int comparison, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+    }
+
+    private static final class NullTest implements ValueTest {
+
+        private final ValueOperator operator;
+
+        NullTest(ValueOperator operator) {
+            this.operator = operator;
+        }
+
+        @Override
+        public boolean test(Value value) {
+            if (value != NullValue.INSTANCE) {
+                return operator == ValueOperator.NEQ;
+            }
+            return compared(operator, 0);
+        }
+
+        @Override
+        public boolean test(char[] chars, int start, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+        @Override
+        public boolean test(byte[] utf8, int start, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+        @Override
+        public int compare(int offset, char[] chars, int start, int length) {
+            return 1;
+        }
+
+        @Override
+        public boolean test(int comparison, int length) {
+            return operator == ValueOperator.NEQ;
+        }
+
+    }
+
+}
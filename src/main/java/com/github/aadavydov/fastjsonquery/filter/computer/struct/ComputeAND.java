@@ -25,10 +25,12 @@
 
 package com.github.aadavydov.fastjsonquery.filter.computer.struct;
 
-public class ComputeAND extends StructuralComputer {
+import com.github.aadavydov.fastjsonquery.filter.computer.ComplexOperatorComputer;
+
+public class ComputeAND implements ComplexOperatorComputer {
 
     @Override
-    boolean getTriggerValue() {
+    public boolean getTriggerValue() {
         return false;
     }
 }
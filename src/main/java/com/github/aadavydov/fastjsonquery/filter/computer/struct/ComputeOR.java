@@ -25,10 +25,12 @@
 
 package com.github.aadavydov.fastjsonquery.filter.computer.struct;
 
-public class ComputeOR extends StructuralComputer {
+import com.github.aadavydov.fastjsonquery.filter.computer.ComplexOperatorComputer;
+
+public class ComputeOR implements ComplexOperatorComputer {
 
     @Override
-    boolean getTriggerValue() {
+    public boolean getTriggerValue() {
         return true;
     }
 }
@@ -45,21 +45,12 @@ public class BinaryPredicate extends PredicateBase implements PathPredicate, Val
     }
 
     @Override
-    public void onValue() {
-        if (left.isValueSet() && right.isValueSet()) {
-            setPredicateValue(computer.compare(left.getValue(), right.getValue()));
-            setNeedToBeCalculated(false);
-            throwResult();
+    public void onValue(PredicateState state) {
+        if (left.isValueSet(state) && right.isValueSet(state)) {
+            decide(state, computer.compare(left.getValue(state), right.getValue(state)));
         }
     }
 
-    @Override
-    public void resetNode() {
-        left.reset();
-        right.reset();
-        super.resetNode();
-    }
-
     @Override
     public void exportValueRecievers(List<PathValueReciever> list) {
         list.add(left);
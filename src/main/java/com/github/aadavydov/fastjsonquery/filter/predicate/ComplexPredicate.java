@@ -42,25 +42,6 @@ public class ComplexPredicate extends PredicateBase {
         this.computer = operator.getComputer();
     }
 
-    public void compute() {
-        if (getNeedToBeCalculated()) {
-            computer.compute(this);
-            if (!getNeedToBeCalculated()) {
-
-                // Отметить всех потомков как needToBeCalculated = false;
-                traverceChilds((n) -> {
-                    if (n.getNeedToBeCalculated()) {
-                        n.setNeedToBeCalculated(false);
-                        return true;
-                    }
-                    return false;
-                });
-
-                throwResult();
-            }
-        }
-    }
-
     public List<Predicate> getChildren() {
         return children;
     }
@@ -70,22 +51,6 @@ public class ComplexPredicate extends PredicateBase {
         predicate.setParent(this);
     }
 
-    @Override
-    public void toDefaultIfNotCalculated() {
-        if (getNeedToBeCalculated()) {
-            traverceChilds((n) -> {
-                if (getNeedToBeCalculated() && n.getNeedToBeCalculated()) {
-                    if (!(n instanceof ComplexPredicate)) {
-                        n.toDefaultIfNotCalculated();
-                        return false;
-                    }
-                    return true;
-                }
-                return false;
-            });
-        }
-    }
-
     public void traverceChilds(Travercer t) {
         LinkedList<ComplexPredicate> queue = new LinkedList<>();
         ComplexPredicate node = this;
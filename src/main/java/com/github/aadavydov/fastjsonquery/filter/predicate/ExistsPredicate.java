@@ -47,10 +47,8 @@ public class ExistsPredicate extends PredicateBase implements PathVisitor, PathP
     }
 
     @Override
-    public void visitPath() {
-        setPredicateValue(true);
-        setNeedToBeCalculated(false);
-        throwResult();
+    public void visitPath(PredicateState state) {
+        decide(state, true);
     }
 
     @Override
@@ -25,34 +25,43 @@
 
 package com.github.aadavydov.fastjsonquery.filter.predicate;
 
-import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueComputer;
 import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueOperator;
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueTest;
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueTests;
 import com.github.aadavydov.fastjsonquery.filter.value.Value;
 
 import java.util.List;
 
-public class LeftPredicate extends PredicateBase implements PathPredicate, ValuePredicate {
+public class LeftPredicate extends PredicateBase implements PathPredicate, ConstantComparison {
 
-    private final ValueComputer computer;
+    private final ValueTest test;
     private final Operand left;
-    private final Value right;
 
     public LeftPredicate(Operand left, Value right, ValueOperator operator) {
+        this(left, ValueTests.forConstant(operator, right));
+    }
+
+    /**
+     * Creates the predicate with a test bound to the constant, see {@link ValueTests#forConstant}.
+     */
+    public LeftPredicate(Operand left, ValueTest test) {
         this.left = left;
         this.left.setPredicate(this);
-        this.right = right;
-        computer = operator.getComputer();
+        this.test = test;
     }
 
     @Override
-    public void onValue() {
-        if (getNeedToBeCalculated()) {
-            setPredicateValue(computer.compare(left.getValue(), right));
-            setNeedToBeCalculated(false);
-            throwResult();
+    public void onValue(PredicateState state) {
+        if (getNeedToBeCalculated(state)) {
+            decide(state, test.test(left.getValue(state)));
         }
     }
 
+    @Override
+    public ValueTest specialize() {
+        return test;
+    }
+
     @Override
     public void exportValueRecievers(List<PathValueReciever> list) {
         list.add(left);
@@ -36,9 +36,9 @@ import com.github.aadavydov.fastjsonquery.filter.variable.Path;
 public class Operand implements PathValueReciever {
 
     private Path path = null;
-    private boolean valueSet = false;
-    private Value value = null;
     private ValuePredicate predicate = null;
+    /* Set by PredicateProgram.compile */
+    int id = 0;
 
     public Operand(String idPath) {
         this.path = new Path(idPath);
@@ -53,28 +53,26 @@ public class Operand implements PathValueReciever {
         return path;
     }
 
-    public boolean isValueSet() {
-        return valueSet;
+    public boolean isValueSet(PredicateState state) {
+        return state.getOperand(id) != null;
     }
 
-    public Value getValue() {
-        return value;
+    public Value getValue(PredicateState state) {
+        return state.getOperand(id);
     }
 
     @Override
-    public void setValue(Value value) {
-        this.valueSet = true;
-        this.value = value;
-        this.predicate.onValue();
-    }
-
-    public void reset() {
-        this.valueSet = false;
-        this.value = null;
+    public void setValue(PredicateState state, Value value) {
+        state.setOperand(id, value);
+        this.predicate.onValue(state);
     }
 
     public void setPredicate(ValuePredicate predicate) {
         this.predicate = predicate;
     }
 
+    public ValuePredicate getPredicate() {
+        return predicate;
+    }
+
 }
@@ -28,5 +28,5 @@ package com.github.aadavydov.fastjsonquery.filter.predicate;
 import com.github.aadavydov.fastjsonquery.filter.value.Value;
 
 public interface PathValueReciever extends PathListener {
-    void setValue(Value value);
+    void setValue(PredicateState state, Value value);
 }
@@ -27,6 +27,6 @@ package com.github.aadavydov.fastjsonquery.filter.predicate;
 
 public interface PathVisitor extends PathListener {
 
-    void visitPath();
+    void visitPath(PredicateState state);
 
 }
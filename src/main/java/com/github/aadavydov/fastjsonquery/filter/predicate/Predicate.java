@@ -31,16 +31,16 @@ public interface Predicate {
 
     public void setParent(ComplexPredicate parent);
 
-    public boolean getNeedToBeCalculated();
+    /**
+     * Returns the number of this predicate in its tree, see
+     * {@link PredicateProgram#compile(Predicate)}.
+     */
+    public int getId();
 
-    public void setNeedToBeCalculated(boolean needToBeCalculated);
+    public boolean getNeedToBeCalculated(PredicateState state);
 
-    public boolean getPredicateValue();
+    public boolean getPredicateValue(PredicateState state);
 
-    public void setPredicateValue(boolean predicateValue);
-
-    public void resetNode();
-
-    public void toDefaultIfNotCalculated();
+    public void toDefaultIfNotCalculated(PredicateState state);
 
 }
@@ -28,8 +28,8 @@ package com.github.aadavydov.fastjsonquery.filter.predicate;
 public abstract class PredicateBase implements Predicate {
 
     private ComplexPredicate parent = null;
-    private boolean needToBeCalculated = true;
-    private boolean predicateValue = false;
+    /* Set by PredicateProgram.compile */
+    int id = 0;
 
     @Override
     public final ComplexPredicate getParent() {
@@ -46,45 +46,27 @@ public abstract class PredicateBase implements Predicate {
     }
 
     @Override
-    public final boolean getNeedToBeCalculated() {
-        return needToBeCalculated;
+    public final int getId() {
+        return id;
     }
 
     @Override
-    public final void setNeedToBeCalculated(boolean needToBeCalculated) {
-        this.needToBeCalculated = needToBeCalculated;
+    public final boolean getNeedToBeCalculated(PredicateState state) {
+        return !state.isCalculated(id);
     }
 
     @Override
-    public final boolean getPredicateValue() {
-        return predicateValue;
+    public final boolean getPredicateValue(PredicateState state) {
+        return state.getValue(id);
     }
 
-    @Override
-    public final void setPredicateValue(boolean predicateValue) {
-        this.predicateValue = predicateValue;
-    }
-
-    @Override
-    public void resetNode() {
-        needToBeCalculated = true;
-        predicateValue = false;
-    }
-
-    void throwResult() {
-        if (parent != null) {
-            // Если не корень
-            parent.compute();
-        }
+    final void decide(PredicateState state, boolean predicateValue) {
+        state.decide(id, predicateValue);
     }
 
     @Override
-    public void toDefaultIfNotCalculated() {
-        if (getNeedToBeCalculated()) {
-            setPredicateValue(false);
-            setNeedToBeCalculated(false);
-            throwResult();
-        }
+    public void toDefaultIfNotCalculated(PredicateState state) {
+        state.decideDefaults(id);
     }
 
 }
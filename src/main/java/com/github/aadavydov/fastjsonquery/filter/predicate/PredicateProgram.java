@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A predicate tree flattened into arrays, in which {@link PredicateState}
+ * propagates the results of the leaves up to the root by index. Predicates
+ * are numbered in depth-first order, the root first, so that the descendants
+ * of a predicate are the ones numbered after it up to the end of its subtree.
+ */
+public final class PredicateProgram {
+
+    static final byte LEAF = 0;
+    /* A child with the trigger value decides the parent at once */
+    static final byte TRIGGER_FALSE = 1;
+    static final byte TRIGGER_TRUE = 2;
+
+    final byte[] opcodes;
+    final int[] parents;
+    /* Exclusive end of the subtree of each predicate */
+    final int[] ends;
+    final int[] childCounts;
+    final int operandCount;
+
+    private PredicateProgram(int predicateCount, int operandCount) {
+        opcodes = new byte[predicateCount];
+        parents = new int[predicateCount];
+        ends = new int[predicateCount];
+        childCounts = new int[predicateCount];
+        this.operandCount = operandCount;
+    }
+
+    /**
+     * Numbers the predicates of {@code tree} and their operands, then compiles
+     * it. The tree is not to be changed afterwards.
+     *
+     * @throws IllegalArgumentException if the tree holds a predicate, value
+     *                                  reciever or visitor of which this
+     *                                  package knows no number
+     */
+    public static PredicateProgram compile(Predicate tree) {
+        int[] counts = new int[2];
+        number(tree, counts);
+        PredicateProgram program = new PredicateProgram(counts[0], counts[1]);
+        program.add(tree, -1);
+        return program;
+    }
+
+    private static void number(Predicate predicate, int[] counts) {
+        if (!(predicate instanceof PredicateBase)) {
+            throw new IllegalArgumentException("Unexpected predicate " + predicate.getClass().getName());
+        }
+        ((PredicateBase) predicate).id = counts[0]++;
+        if (predicate instanceof ComplexPredicate) {
+            for (Predicate child : ((ComplexPredicate) predicate).getChildren()) {
+                number(child, counts);
+            }
+        } else if (predicate instanceof PathPredicate) {
+            List<PathValueReciever> recievers = new ArrayList<>();
+            ((PathPredicate) predicate).exportValueRecievers(recievers);
+            for (PathValueReciever reciever : recievers) {
+                if (!(reciever instanceof Operand)) {
+                    throw new IllegalArgumentException("Unexpected reciever " + reciever.getClass().getName());
+                }
+                ((Operand) reciever).id = counts[1]++;
+            }
+            // a visitor is fed by the id of the predicate it is
+            List<PathVisitor> visitors = new ArrayList<>();
+            ((PathPredicate) predicate).exportVisitors(visitors);
+            for (PathVisitor visitor : visitors) {
+                if (!(visitor instanceof PredicateBase)) {
+                    throw new IllegalArgumentException("Unexpected visitor " + visitor.getClass().getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the end of the subtree of {@code predicate}
+     */
+    private int add(Predicate predicate, int parent) {
+        int id = predicate.getId();
+        parents[id] = parent;
+        int end = id + 1;
+        if (predicate instanceof ComplexPredicate) {
+            ComplexPredicate complex = (ComplexPredicate) predicate;
+            opcodes[id] = complex.getComputer().getTriggerValue() ? TRIGGER_TRUE : TRIGGER_FALSE;
+            childCounts[id] = complex.getChildren().size();
+            for (Predicate child : complex.getChildren()) {
+                end = add(child, id);
+            }
+        } else {
+            opcodes[id] = LEAF;
+        }
+        ends[id] = end;
+        return end;
+    }
+
+    public int getPredicateCount() {
+        return opcodes.length;
+    }
+
+    public int getOperandCount() {
+        return operandCount;
+    }
+
+    public PredicateState newState() {
+        return new PredicateState(this);
+    }
+
+}
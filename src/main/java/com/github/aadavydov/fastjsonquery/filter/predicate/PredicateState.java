@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.predicate;
+
+import com.github.aadavydov.fastjsonquery.filter.value.Value;
+
+import java.util.Arrays;
+
+/**
+ * The results of one evaluation of a {@link PredicateProgram}, kept apart from
+ * the program so that threads can share it, each evaluating with a state of
+ * its own. Predicates and operands find their slots here by number.
+ */
+public final class PredicateState {
+
+    private final PredicateProgram program;
+    /*
+     * A slot holds a value of the current evaluation only if its stamp is the
+     * current epoch, so that a reset just starts a new epoch.
+     */
+    private int epoch = 1;
+    /* Per predicate, the epoch in which it was calculated */
+    private final int[] calculated;
+    private final boolean[] values;
+    /* Per complex predicate, the children not calculated yet */
+    private final int[] pending;
+    private final int[] pendingStamps;
+    private final Value[] operands;
+    private final int[] operandStamps;
+
+    PredicateState(PredicateProgram program) {
+        this.program = program;
+        calculated = new int[program.opcodes.length];
+        values = new boolean[program.opcodes.length];
+        pending = new int[program.opcodes.length];
+        pendingStamps = new int[program.opcodes.length];
+        operands = new Value[program.operandCount];
+        operandStamps = new int[program.operandCount];
+    }
+
+    public void reset() {
+        if (++epoch == 0) {
+            Arrays.fill(calculated, 0);
+            Arrays.fill(pendingStamps, 0);
+            Arrays.fill(operandStamps, 0);
+            epoch = 1;
+        }
+    }
+
+    /* Lets a test bring the wrap of the epoch close */
+    void setEpoch(int epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * Records the result of {@code predicate} and carries it up as far as it
+     * decides its ancestors, each step taking a counter of the pending children
+     * down. The first result of a predicate stands, and a predicate below a
+     * decided one is not computed.
+     */
+    void decide(int predicate, boolean value) {
+        if (!isCalculated(predicate)) {
+            propagate(predicate, value);
+        }
+    }
+
+    /* No ancestor of predicate is calculated */
+    private void propagate(int predicate, boolean value) {
+        byte[] opcodes = program.opcodes;
+        int[] parents = program.parents;
+        int epoch = this.epoch;
+        calculated[predicate] = epoch;
+        values[predicate] = value;
+        int parent;
+        while ((parent = parents[predicate]) >= 0) {
+            boolean trigger = opcodes[parent] == PredicateProgram.TRIGGER_TRUE;
+            if (value != trigger) {
+                if (pendingStamps[parent] != epoch) {
+                    pendingStamps[parent] = epoch;
+                    pending[parent] = program.childCounts[parent];
+                }
+                if (--pending[parent] > 0) {
+                    return;
+                }
+                value = !trigger;
+            }
+            calculated[parent] = epoch;
+            values[parent] = value;
+            predicate = parent;
+        }
+    }
+
+    /**
+     * Gives every leaf of the subtree of {@code predicate} not calculated yet
+     * the value false, until the result of {@code predicate} is known.
+     */
+    void decideDefaults(int predicate) {
+        if (isCalculated(predicate)) {
+            return;
+        }
+        byte[] opcodes = program.opcodes;
+        int[] ends = program.ends;
+        int i = predicate;
+        while (i < ends[predicate] && calculated[predicate] != epoch) {
+            if (isCalculated(i)) {
+                i = ends[i];
+            } else {
+                if (opcodes[i] == PredicateProgram.LEAF) {
+                    propagate(i, false);
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns true if {@code predicate} or one of its ancestors is calculated:
+     * a decided predicate leaves its subtree as it is.
+     */
+    boolean isCalculated(int predicate) {
+        int[] parents = program.parents;
+        for (int i = predicate; i >= 0; i = parents[i]) {
+            if (calculated[i] == epoch) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if every one of {@code predicates} is calculated, so that
+     * no value read from now on can change them.
+     */
+    public boolean isCalculated(int[] predicates) {
+        for (int predicate : predicates) {
+            if (!isCalculated(predicate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean getValue(int predicate) {
+        return values[predicate];
+    }
+
+    Value getOperand(int operand) {
+        return operandStamps[operand] == epoch ? operands[operand] : null;
+    }
+
+    void setOperand(int operand, Value value) {
+        operandStamps[operand] = epoch;
+        operands[operand] = value;
+    }
+
+}
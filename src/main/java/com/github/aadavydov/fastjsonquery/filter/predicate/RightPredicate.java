@@ -25,34 +25,43 @@
 
 package com.github.aadavydov.fastjsonquery.filter.predicate;
 
-import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueComputer;
 import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueOperator;
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueTest;
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueTests;
 import com.github.aadavydov.fastjsonquery.filter.value.Value;
 
 import java.util.List;
 
-public class RightPredicate extends PredicateBase implements PathPredicate, ValuePredicate {
+public class RightPredicate extends PredicateBase implements PathPredicate, ConstantComparison {
 
-    private final ValueComputer computer;
+    private final ValueTest test;
     private final Operand right;
-    private final Value left;
 
     public RightPredicate(Value left, Operand right, ValueOperator operator) {
+        this(right, ValueTests.forConstant(operator.mirror(), left));
+    }
+
+    /**
+     * Creates the predicate with a test bound to the constant, see {@link ValueTests#forConstant}.
+     */
+    public RightPredicate(Operand right, ValueTest test) {
         this.right = right;
         this.right.setPredicate(this);
-        this.left = left;
-        computer = operator.getComputer();
+        this.test = test;
     }
 
     @Override
-    public void onValue() {
-        if (getNeedToBeCalculated()) {
-            setPredicateValue(computer.compare(left, right.getValue()));
-            setNeedToBeCalculated(false);
-            throwResult();
+    public void onValue(PredicateState state) {
+        if (getNeedToBeCalculated(state)) {
+            decide(state, test.test(right.getValue(state)));
         }
     }
 
+    @Override
+    public ValueTest specialize() {
+        return test;
+    }
+
     @Override
     public void exportValueRecievers(List<PathValueReciever> list) {
         list.add(right);
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.predicate;
+
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueTest;
+import com.github.aadavydov.fastjsonquery.filter.value.Value;
+
+import java.util.List;
+
+/**
+ * The recievers of one path compiled into the tests of the predicates they
+ * belong to, so that a value decides them without going through the operands,
+ * and a string without even being made into a value.
+ */
+public final class SpecializedRecievers {
+
+    private final int[] predicates;
+    private final ValueTest[] tests;
+
+    private SpecializedRecievers(int size) {
+        predicates = new int[size];
+        tests = new ValueTest[size];
+    }
+
+    /**
+     * Returns the compiled {@code recievers}, or null if some of them is not
+     * the operand of a {@link ConstantComparison}.
+     */
+    public static SpecializedRecievers compile(List<PathValueReciever> recievers) {
+        if (recievers == null || recievers.isEmpty()) {
+            return null;
+        }
+        SpecializedRecievers compiled = new SpecializedRecievers(recievers.size());
+        for (int i = 0; i < recievers.size(); i++) {
+            PathValueReciever reciever = recievers.get(i);
+            if (!(reciever instanceof Operand) || !(((Operand) reciever).getPredicate() instanceof ConstantComparison)) {
+                return null;
+            }
+            ConstantComparison predicate = (ConstantComparison) ((Operand) reciever).getPredicate();
+            compiled.predicates[i] = ((Predicate) predicate).getId();
+            compiled.tests[i] = predicate.specialize();
+        }
+        return compiled;
+    }
+
+    public int size() {
+        return predicates.length;
+    }
+
+    public void setValue(PredicateState state, Value value) {
+        for (int i = 0; i < predicates.length; i++) {
+            if (!state.isCalculated(predicates[i])) {
+                state.decide(predicates[i], tests[i].test(value));
+            }
+        }
+    }
+
+    /**
+     * Like {@link #setValue(PredicateState, Value)} for the string of
+     * {@code length} chars from {@code start}.
+     */
+    public void setString(PredicateState state, char[] chars, int start, int length) {
+        for (int i = 0; i < predicates.length; i++) {
+            if (!state.isCalculated(predicates[i])) {
+                state.decide(predicates[i], tests[i].test(chars, start, length));
+            }
+        }
+    }
+
+    /**
+     * Like {@link #setValue(PredicateState, Value)} for the string of
+     * {@code length} bytes of UTF-8 from {@code start}.
+     */
+    public void setString(PredicateState state, byte[] utf8, int start, int length) {
+        for (int i = 0; i < predicates.length; i++) {
+            if (!state.isCalculated(predicates[i])) {
+                state.decide(predicates[i], tests[i].test(utf8, start, length));
+            }
+        }
+    }
+
+    /**
+     * Compares a part of a string, see
+     * {@link ValueTest#compare(int, char[], int, int)}, with the constants
+     * whose comparisons are still open, 0, in {@code comparisons}.
+     *
+     * @return whether some comparison is still open
+     */
+    public boolean compareString(PredicateState state, int[] comparisons, int offset, char[] chars, int start, int length) {
+        boolean open = false;
+        for (int i = 0; i < predicates.length; i++) {
+            if (comparisons[i] == 0 && !state.isCalculated(predicates[i])) {
+                comparisons[i] = tests[i].compare(offset, chars, start, length);
+                open |= comparisons[i] == 0;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Like {@link #setValue(PredicateState, Value)} for a string of
+     * {@code length} chars compared by parts into {@code comparisons}.
+     */
+    public void setString(PredicateState state, int[] comparisons, int length) {
+        for (int i = 0; i < predicates.length; i++) {
+            if (!state.isCalculated(predicates[i])) {
+                state.decide(predicates[i], tests[i].test(comparisons[i], length));
+            }
+        }
+    }
+
+}
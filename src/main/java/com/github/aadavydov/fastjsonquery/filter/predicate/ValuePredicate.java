@@ -26,5 +26,5 @@
 package com.github.aadavydov.fastjsonquery.filter.predicate;
 
 public interface ValuePredicate {
-    public void onValue();
+    public void onValue(PredicateState state);
 }
@@ -27,10 +27,173 @@ package com.github.aadavydov.fastjsonquery.filter.value;
 
 import java.math.BigDecimal;
 
-public class NumberValue extends ComparableValueBase<BigDecimal, NumberValue> {
+/**
+ * A number, held as a long when it is an integer literal, as a double when its
+ * literal is short enough for doubles to compare like the decimals, and as a
+ * {@link BigDecimal} otherwise. The {@link BigDecimal} of the first two is
+ * only built when asked for. Two numbers are equal when their
+ * {@link BigDecimal}s are, so the scale counts: {@code 2.0} is not {@code 2}.
+ */
+public class NumberValue implements Value {
+
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte BIG = 2;
+
+    /*
+     * Decimals of at most this many digits round to distinct doubles in their
+     * order, and with a power of ten of at most MAX_POWER they are converted
+     * with a single rounding.
+     */
+    private static final int DOUBLE_DIGITS = 15;
+    private static final int LONG_DIGITS = 18;
+    private static final long MAX_EXACT_LONG = 1_000_000_000_000_000L;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_POWER = POWERS_OF_TEN.length - 1;
+
+    private final byte kind;
+    /* The number is unscaled * 10^-scale, unscaled is set unless BIG */
+    private final long unscaled;
+    private final int scale;
+    /* Whether doubleValue compares as the number does */
+    private final boolean exactDouble;
+    private final double doubleValue;
+    private BigDecimal value;
 
     public NumberValue(String value) {
-        super(new BigDecimal(value));
+        this(value.toCharArray(), 0, value.length());
+    }
+
+    public NumberValue(long value) {
+        this.kind = LONG;
+        this.unscaled = value;
+        this.scale = 0;
+        this.exactDouble = value > -MAX_EXACT_LONG && value < MAX_EXACT_LONG;
+        this.doubleValue = value;
+    }
+
+    /**
+     * Reads the number from the literal of {@code count} chars from
+     * {@code offset}.
+     */
+    public NumberValue(char[] value, int offset, int count) {
+        int length = offset + count;
+        int i = offset;
+        boolean negative = i < length && value[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int intStart = i;
+        int scale = 0;
+        boolean integer = true;
+        char c = 0;
+        for (; i < length && (c = value[i]) >= '0' && c <= '9'; i++) {
+            digits = digits * 10 + (c - '0');
+            if (digits != 0) {
+                digitCount++;
+            }
+        }
+        boolean wellFormed = i > intStart;
+        if (i < length && c == '.') {
+            integer = false;
+            int fractionStart = ++i;
+            for (; i < length && (c = value[i]) >= '0' && c <= '9' && digitCount <= LONG_DIGITS; i++) {
+                digits = digits * 10 + (c - '0');
+                if (digits != 0) {
+                    digitCount++;
+                }
+                scale++;
+            }
+            wellFormed &= i > fractionStart;
+        }
+        if (i < length && (c == 'e' || c == 'E')) {
+            integer = false;
+            i++;
+            boolean negativeExponent = i < length && value[i] == '-';
+            if (i < length && (negativeExponent || value[i] == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            int exponent = 0;
+            for (; i < length && (c = value[i]) >= '0' && c <= '9' && i - exponentStart < 4; i++) {
+                exponent = exponent * 10 + (c - '0');
+            }
+            wellFormed &= i > exponentStart;
+            scale += negativeExponent ? exponent : -exponent;
+        }
+        wellFormed &= i == length && digitCount <= LONG_DIGITS;
+
+        if (wellFormed && integer) {
+            this.kind = LONG;
+            this.unscaled = negative ? -digits : digits;
+            this.scale = 0;
+            this.exactDouble = digitCount <= DOUBLE_DIGITS;
+            this.doubleValue = unscaled;
+        } else if (wellFormed && digitCount <= DOUBLE_DIGITS && scale <= MAX_POWER && scale >= -MAX_POWER) {
+            this.kind = DOUBLE;
+            this.unscaled = negative ? -digits : digits;
+            this.scale = scale;
+            this.exactDouble = true;
+            this.doubleValue = scale >= 0 ? unscaled / POWERS_OF_TEN[scale] : unscaled * POWERS_OF_TEN[-scale];
+        } else {
+            this.kind = BIG;
+            this.value = new BigDecimal(value, offset, count);
+            this.unscaled = 0;
+            this.scale = this.value.scale();
+            this.exactDouble = false;
+            this.doubleValue = 0;
+        }
+    }
+
+    /**
+     * Returns true if the number is held as a long, see {@link #longValue()}.
+     */
+    public boolean isLong() {
+        return kind == LONG;
+    }
+
+    public long longValue() {
+        return unscaled;
+    }
+
+    public BigDecimal getValue() {
+        BigDecimal v = value;
+        if (v == null) {
+            value = v = BigDecimal.valueOf(unscaled, scale);
+        }
+        return v;
+    }
+
+    /**
+     * Compares the numbers as {@link BigDecimal#compareTo(BigDecimal)}.
+     */
+    public int compareTo(NumberValue other) {
+        if (kind == LONG && other.kind == LONG) {
+            return Long.compare(unscaled, other.unscaled);
+        }
+        if (exactDouble && other.exactDouble) {
+            return doubleValue < other.doubleValue ? -1 : (doubleValue > other.doubleValue ? 1 : 0);
+        }
+        return getValue().compareTo(other.getValue());
+    }
+
+    /**
+     * Compares the numbers as {@link BigDecimal#equals(Object)}, that is with
+     * their scales.
+     */
+    public boolean equalTo(NumberValue other) {
+        if (scale != other.scale) {
+            return false;
+        }
+        if (kind != BIG && other.kind != BIG) {
+            return unscaled == other.unscaled;
+        }
+        return getValue().equals(other.getValue());
     }
 
     @Override
@@ -63,4 +226,39 @@ public class NumberValue extends ComparableValueBase<BigDecimal, NumberValue> {
         return right.lteInverse(this);
     }
 
+    @Override
+    public boolean eqInverse(NumberValue left) {
+        return left.equalTo(this);
+    }
+
+    @Override
+    public boolean neqInverse(NumberValue left) {
+        return !left.equalTo(this);
+    }
+
+    @Override
+    public boolean gtInverse(NumberValue left) {
+        return left.compareTo(this) > 0;
+    }
+
+    @Override
+    public boolean gteInverse(NumberValue left) {
+        return left.compareTo(this) >= 0;
+    }
+
+    @Override
+    public boolean ltInverse(NumberValue left) {
+        return left.compareTo(this) < 0;
+    }
+
+    @Override
+    public boolean lteInverse(NumberValue left) {
+        return left.compareTo(this) <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NumberValue{" + "value=" + getValue() + '}';
+    }
+
 }
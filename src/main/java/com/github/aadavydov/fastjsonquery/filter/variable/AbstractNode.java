@@ -25,32 +25,165 @@
 
 package com.github.aadavydov.fastjsonquery.filter.variable;
 
+import com.github.aadavydov.fastjsonquery.filter.predicate.Operand;
 import com.github.aadavydov.fastjsonquery.filter.predicate.PathValueReciever;
 import com.github.aadavydov.fastjsonquery.filter.predicate.PathVisitor;
+import com.github.aadavydov.fastjsonquery.filter.predicate.Predicate;
+import com.github.aadavydov.fastjsonquery.jsonutils.NameTable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public abstract class AbstractNode<C> {
 
+    private static final VariableNode[] NO_INDEXED_CHILDREN = new VariableNode[0];
+
+    /* Children addressed by a name */
     private Map<C, VariableNode<C, ?>> children;
+    /* Children addressed by an index, by position up to the highest one */
+    private VariableNode[] indexedChildren = NO_INDEXED_CHILDREN;
+    private int indexedCount = 0;
+    /* Built by prepare(): per position, the next one with a child */
+    private int[] nextIndexes = null;
+    /* Built by prepare() from the named children, slot by slot */
+    private NameTable names = null;
+    private VariableNode[] namedChildren = null;
     private List<PathValueReciever> recievers = null;
     private List<PathVisitor> visitors = null;
+    /* Built by prepare(): the ids of the predicates fed here or below */
+    private int[] predicates = null;
+    /* Set by VariableTree, 0 for the root */
+    int id = 0;
 
     protected void addChildNode(VariableNode<C, ?> node) {
+        C name = node.getName();
+        if (name instanceof Integer) {
+            int index = (Integer) name;
+            if (index >= indexedChildren.length) {
+                indexedChildren = Arrays.copyOf(indexedChildren, index + 1);
+            }
+            if (indexedChildren[index] == null) {
+                indexedCount++;
+            }
+            indexedChildren[index] = node;
+            return;
+        }
         if (children == null) {
             children = new HashMap<>();
         }
-        children.put(node.getName(), node);
+        children.put(name, node);
+    }
+
+    /**
+     * Builds the lookup tables of this node and of its descendants, once all
+     * paths have been added.
+     */
+    void prepare() {
+        int[] next = new int[indexedChildren.length];
+        int following = -1;
+        for (int i = next.length - 1; i >= 0; i--) {
+            if (indexedChildren[i] != null) {
+                following = i;
+                indexedChildren[i].prepare();
+            }
+            next[i] = following;
+        }
+        nextIndexes = next;
+
+        List<String> keys = new ArrayList<>();
+        if (children != null) {
+            for (C key : children.keySet()) {
+                keys.add((String) key);
+            }
+        }
+        names = new NameTable(keys);
+        namedChildren = new VariableNode[names.size()];
+        for (int i = 0; i < namedChildren.length; i++) {
+            namedChildren[i] = children.get(names.name(i));
+            namedChildren[i].prepare();
+        }
+
+        BitSet fed = new BitSet();
+        if (recievers != null) {
+            for (PathValueReciever reciever : recievers) {
+                fed.set(((Predicate) ((Operand) reciever).getPredicate()).getId());
+            }
+        }
+        if (visitors != null) {
+            for (PathVisitor visitor : visitors) {
+                fed.set(((Predicate) visitor).getId());
+            }
+        }
+        for (VariableNode<?, ?> child : indexedChildren) {
+            if (child != null) {
+                for (int predicate : child.getPredicates()) {
+                    fed.set(predicate);
+                }
+            }
+        }
+        for (VariableNode<?, ?> child : namedChildren) {
+            for (int predicate : child.getPredicates()) {
+                fed.set(predicate);
+            }
+        }
+        predicates = fed.stream().toArray();
+    }
+
+    /**
+     * Returns the number of this node in its tree, 0 for the root.
+     */
+    public int getId() {
+        return id;
     }
 
     public VariableNode getChildNode(C name) {
+        if (name instanceof Integer) {
+            return getIndexedChild((Integer) name);
+        }
         if (children == null) return null;
         return children.get(name);
     }
 
+    /**
+     * Returns the child at array position {@code index}, or null.
+     */
+    public VariableNode getIndexedChild(int index) {
+        return index < indexedChildren.length ? indexedChildren[index] : null;
+    }
+
+    /**
+     * Returns the lowest array position from {@code index} on with a child, or
+     * -1 if there is none.
+     */
+    public int nextIndex(int index) {
+        return index < nextIndexes.length ? nextIndexes[index] : -1;
+    }
+
+    /**
+     * Returns the highest array position with a child, or -1.
+     */
+    public int getMaxIndex() {
+        return indexedChildren.length - 1;
+    }
+
+    /**
+     * Returns the table of the names of the children addressed by a name.
+     */
+    public NameTable getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the child in {@code slot} of {@link #getNames()}.
+     */
+    public VariableNode getNamedChild(int slot) {
+        return namedChildren[slot];
+    }
+
     public void addReciever(PathValueReciever reciever) {
         if (recievers == null) recievers = new ArrayList<>();
         recievers.add(reciever);
@@ -69,9 +202,39 @@ public abstract class AbstractNode<C> {
         return visitors;
     }
 
+    /**
+     * Returns the ids of the predicates fed by this node and its descendants.
+     */
+    public int[] getPredicates() {
+        return predicates;
+    }
+
     public boolean hasChildren() {
+        return hasNamedChildren() || hasIndexedChildren();
+    }
+
+    /**
+     * Returns true if some child is addressed by a name, so that an object at
+     * this node has to be entered.
+     */
+    public boolean hasNamedChildren() {
         return children != null && !children.isEmpty();
     }
 
+    /**
+     * Returns true if some child is addressed by an index, so that an array at
+     * this node has to be entered.
+     */
+    public boolean hasIndexedChildren() {
+        return indexedCount > 0;
+    }
+
+    /**
+     * Returns true if this node is addressed by an index in its parent.
+     */
+    public boolean isIndexed() {
+        return false;
+    }
+
     public abstract AbstractNode getParent();
 }
@@ -25,137 +25,51 @@
 
 package com.github.aadavydov.fastjsonquery.filter.variable;
 
-import com.github.aadavydov.fastjsonquery.filter.predicate.*;
+import com.github.aadavydov.fastjsonquery.filter.predicate.PredicateState;
+import com.github.aadavydov.fastjsonquery.jsonutils.NameTable;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 public final class VariableCommander {
 
-    private final RootNode tree = new RootNode();
+    private final RootNode tree;
     private final int[] indexStack;
     private AbstractNode currentPosition = null;
-    private int maxIndexDepth = 0;
     private int indexPointer = 0;
-    private String nextName = null;
-
-    public VariableCommander(Predicate predicateTree) {
-        buildTree(predicateTree);
-        indexStack = new int[maxIndexDepth];
-        Arrays.setAll(indexStack, (i) -> -1);
+    private AbstractNode nextNode = null;
+
+    /* Per array or object entered, from 1: whether it is an array, and for an
+     * object the number of its named children not seen yet */
+    private final boolean[] containerArrays;
+    private final int[] pendingNames;
+    private final int[] containerStamps;
+    private int containerPointer = 0;
+    /* Per node id, the stamp of the container in which the node was last seen */
+    private final int[] seenStamps;
+    private int stamp = 0;
+
+    /**
+     * Creates a cursor over {@code variables}. The tree is only read, so any
+     * number of commanders may walk one tree at a time.
+     */
+    public VariableCommander(VariableTree variables) {
+        tree = variables.getRoot();
+        indexStack = new int[Math.max(1, variables.getMaxIndexDepth())];
+        Arrays.fill(indexStack, -1);
+        int depth = variables.getMaxDepth() + 2;
+        containerArrays = new boolean[depth];
+        pendingNames = new int[depth];
+        containerStamps = new int[depth];
+        seenStamps = new int[variables.getNodeCount()];
     }
 
     public void reset() {
         indexPointer = 0;
+        containerPointer = 0;
         currentPosition = null;
-        Arrays.setAll(indexStack, (i) -> -1);
-    }
-
-    private void buildTree(Predicate predicateTree) {
-
-        List<PathValueReciever> valueRecievers = new ArrayList<>();
-        List<PathVisitor> visitors = new ArrayList<>();
-
-        ComplexPredicate.Travercer t = (n) -> {
-            if (n instanceof PathPredicate) {
-                PathPredicate pp = (PathPredicate) n;
-                pp.exportValueRecievers(valueRecievers);
-                pp.exportVisitors(visitors);
-                return false;
-            }
-            return true;
-        };
-
-        if (t.visit(predicateTree)) {
-            ((ComplexPredicate) predicateTree).traverceChilds(t);
-        }
-
-        for (PathValueReciever vr : valueRecievers) {
-            addPath(vr);
-        }
-        for (PathVisitor pv : visitors) {
-            addPath(pv);
-        }
-
-    }
-
-    private AbstractNode nodeForPath(Path path) {
-
-        if (path != null && path.getPath() != null) {
-            String[] names = path.getPath();
-
-            int namesLen = names.length;
-            int indexLen = 0;
-
-            int openBraketIndex, closeBraketIndex;
-            AbstractNode node = tree;
-
-            for (int i = 0; i < namesLen; i++) {
-                if (names[i].length() == 0) {
-                    continue;
-                }
-
-                String currName = names[i];
-
-                if ((openBraketIndex = names[i].indexOf('[')) == -1) {
-                    node = nextNode(currName, node);
-                } else {
-                    String bracketString = currName.substring(0, openBraketIndex);
-                    if (bracketString.length() > 0) {
-                        node = nextNode(bracketString, node);
-                    }
-
-                    while (openBraketIndex != -1) {
-                        closeBraketIndex = currName.indexOf(']', openBraketIndex);
-                        Integer index = Integer.parseInt(currName.substring(openBraketIndex + 1, closeBraketIndex));
-                        indexLen++;
-                        node = nextNode(index, node);
-                        openBraketIndex = currName.indexOf('[', closeBraketIndex);
-                    }
-                }
-            }
-
-            int totalIdxLen = indexLen + 1;
-
-            if (totalIdxLen > maxIndexDepth) {
-                maxIndexDepth = totalIdxLen;
-            }
-
-            return node;
-        } else {
-            return tree;
-        }
-    }
-
-    protected void addPath(PathValueReciever valueReciever) {
-        AbstractNode nodeForPath = nodeForPath(valueReciever.getPath());
-        if (nodeForPath != null) {
-            nodeForPath.addReciever(valueReciever);
-        }
-    }
-
-    protected void addPath(PathVisitor visitor) {
-        AbstractNode nodeForPath = nodeForPath(visitor.getPath());
-        if (nodeForPath != null) {
-            nodeForPath.addVisitor(visitor);
-        }
-    }
-
-    private VariableNode nextNode(String nodeName, AbstractNode<String> parent) {
-        VariableNode<String, ?> res = parent.getChildNode(nodeName);
-        if (res == null) {
-            res = new VariableNode<>(nodeName, parent);
-        }
-        return res;
-    }
-
-    private VariableNode nextNode(Integer index, AbstractNode<Integer> parent) {
-        VariableNode<Integer, ?> res = parent.getChildNode(index);
-        if (res == null) {
-            res = new VariableNode<>(index, parent);
-        }
-        return res;
+        nextNode = null;
+        // the deeper slots are set as their arrays are entered
+        indexStack[0] = -1;
     }
 
     public boolean nextName(String name) {
@@ -163,20 +77,39 @@ public final class VariableCommander {
         if (childNode == null) {
             return false;
         }
-        nextName = name;
+        nextNode = childNode;
         return true;
     }
 
+    /**
+     * Like {@link #nextName(String)} for a name found in slot {@code slot} of
+     * {@link #currentNames()}, or -1 for any other name.
+     */
+    public boolean nextName(int slot) {
+        if (slot < 0) {
+            return false;
+        }
+        nextNode = currentPosition.getNamedChild(slot);
+        return true;
+    }
+
+    /**
+     * Returns the names expected in the object at the current position.
+     */
+    public NameTable currentNames() {
+        return currentPosition.getNames();
+    }
+
     public AbstractNode valueBegin() {
         if (currentPosition == null) {
             currentPosition = tree;
             return currentPosition;
-        } else if (nextName != null) {
-            currentPosition = currentPosition.getChildNode(nextName);
-            nextName = null;
+        } else if (nextNode != null) {
+            currentPosition = nextNode;
+            nextNode = null;
             return currentPosition;
         } else if (indexStack[indexPointer] >= 0) {
-            AbstractNode childNode = currentPosition.getChildNode(indexStack[indexPointer]);
+            AbstractNode childNode = currentPosition.getIndexedChild(indexStack[indexPointer]);
             if (childNode != null) {
                 currentPosition = childNode;
             } else {
@@ -190,20 +123,98 @@ public final class VariableCommander {
     }
 
     public void valueEnd() {
-        currentPosition = currentPosition.getParent();
-        if (indexStack[indexPointer] >= 0) {
+        AbstractNode ended = currentPosition;
+        currentPosition = ended.getParent();
+        // only an element of the innermost array moves its index on, not a
+        // value nested in an object inside that array
+        if (ended.isIndexed()) {
             indexStack[indexPointer]++;
+        } else if (currentPosition != null) {
+            int s = containerStamps[containerPointer];
+            if (seenStamps[ended.id] != s) {
+                seenStamps[ended.id] = s;
+                pendingNames[containerPointer]--;
+            }
         }
     }
 
+    public void beginObject() {
+        enterContainer(false);
+        pendingNames[containerPointer] = currentPosition.getNames().size();
+    }
+
+    public void endObject() {
+        containerPointer--;
+    }
+
     public void beginArray() {
         indexPointer++;
         indexStack[indexPointer] = 0;
+        enterContainer(true);
     }
 
     public void endArray() {
         indexStack[indexPointer] = -1;
         indexPointer--;
+        containerPointer--;
+    }
+
+    private void enterContainer(boolean array) {
+        containerPointer++;
+        containerArrays[containerPointer] = array;
+        containerStamps[containerPointer] = ++stamp;
+    }
+
+    /**
+     * Leaves every innermost array or object the predicates need nothing more
+     * from: an object whose queried names have all been seen and whose
+     * predicates are all decided, or an array past its highest queried index.
+     * An object with a predicate still open stays, as a duplicate name later in
+     * it may yet decide the predicate.
+     *
+     * @return the number of arrays and objects left, whose rest is to be
+     * skipped unless {@link #hasMoreVariables()} is now false
+     */
+    public int leaveCompleted(PredicateState predicates) {
+        int left = 0;
+        while (containerPointer > 0 && isCompleted(predicates)) {
+            if (containerArrays[containerPointer]) {
+                endArray();
+            } else {
+                endObject();
+            }
+            valueEnd();
+            left++;
+        }
+        return left;
+    }
+
+    /**
+     * Returns the number of elements of the array at the current position that
+     * come before the next one queried, and so can be skipped unseen.
+     */
+    public int elementsToSkip() {
+        if (containerPointer == 0 || !containerArrays[containerPointer]) {
+            return 0;
+        }
+        int index = indexStack[indexPointer];
+        int next = currentPosition.nextIndex(index);
+        return next < 0 ? 0 : next - index;
+    }
+
+    /**
+     * Moves the index of the array at the current position past {@code count}
+     * elements skipped by the reader.
+     */
+    public void elementsSkipped(int count) {
+        indexStack[indexPointer] += count;
+    }
+
+    private boolean isCompleted(PredicateState predicates) {
+        if (containerArrays[containerPointer]) {
+            return indexStack[indexPointer] > currentPosition.getMaxIndex();
+        }
+        return pendingNames[containerPointer] == 0 && predicates.isCalculated(currentPosition.getPredicates());
     }
 
     public boolean hasMoreVariables() {
@@ -40,6 +40,11 @@ public class VariableNode<P, C> extends AbstractNode<C> {
         return name;
     }
 
+    @Override
+    public boolean isIndexed() {
+        return name instanceof Integer;
+    }
+
     @Override
     public AbstractNode getParent() {
         return parent;
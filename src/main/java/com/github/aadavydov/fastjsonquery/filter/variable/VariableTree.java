@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.variable;
+
+import com.github.aadavydov.fastjsonquery.filter.predicate.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The paths a predicate tree reads, as a tree of nodes. It is complete and
+ * left unchanged once constructed, and walked by {@link VariableCommander}s.
+ */
+public final class VariableTree {
+
+    private final RootNode tree = new RootNode();
+    private int maxIndexDepth = 0;
+    private int maxDepth = 0;
+    private int nodeCount = 1;
+
+    public VariableTree(Predicate predicateTree) {
+        buildTree(predicateTree);
+        tree.prepare();
+    }
+
+    public RootNode getRoot() {
+        return tree;
+    }
+
+    public int getMaxIndexDepth() {
+        return maxIndexDepth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    private void buildTree(Predicate predicateTree) {
+
+        List<PathValueReciever> valueRecievers = new ArrayList<>();
+        List<PathVisitor> visitors = new ArrayList<>();
+
+        ComplexPredicate.Travercer t = (n) -> {
+            if (n instanceof PathPredicate) {
+                PathPredicate pp = (PathPredicate) n;
+                pp.exportValueRecievers(valueRecievers);
+                pp.exportVisitors(visitors);
+                return false;
+            }
+            return true;
+        };
+
+        if (t.visit(predicateTree)) {
+            ((ComplexPredicate) predicateTree).traverceChilds(t);
+        }
+
+        for (PathValueReciever vr : valueRecievers) {
+            addPath(vr);
+        }
+        for (PathVisitor pv : visitors) {
+            addPath(pv);
+        }
+
+    }
+
+    private AbstractNode nodeForPath(Path path) {
+
+        if (path != null && path.getPath() != null) {
+            String[] names = path.getPath();
+
+            int namesLen = names.length;
+            int indexLen = 0;
+            int depth = 0;
+
+            int openBraketIndex, closeBraketIndex;
+            AbstractNode node = tree;
+
+            for (int i = 0; i < namesLen; i++) {
+                if (names[i].length() == 0) {
+                    continue;
+                }
+
+                String currName = names[i];
+
+                if ((openBraketIndex = names[i].indexOf('[')) == -1) {
+                    node = nextNode(currName, node);
+                    depth++;
+                } else {
+                    String bracketString = currName.substring(0, openBraketIndex);
+                    if (bracketString.length() > 0) {
+                        node = nextNode(bracketString, node);
+                        depth++;
+                    }
+
+                    while (openBraketIndex != -1) {
+                        closeBraketIndex = currName.indexOf(']', openBraketIndex);
+                        Integer index = Integer.parseInt(currName.substring(openBraketIndex + 1, closeBraketIndex));
+                        indexLen++;
+                        node = nextNode(index, node);
+                        depth++;
+                        openBraketIndex = currName.indexOf('[', closeBraketIndex);
+                    }
+                }
+            }
+
+            int totalIdxLen = indexLen + 1;
+
+            if (totalIdxLen > maxIndexDepth) {
+                maxIndexDepth = totalIdxLen;
+            }
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+
+            return node;
+        } else {
+            return tree;
+        }
+    }
+
+    private void addPath(PathValueReciever valueReciever) {
+        AbstractNode nodeForPath = nodeForPath(valueReciever.getPath());
+        if (nodeForPath != null) {
+            nodeForPath.addReciever(valueReciever);
+        }
+    }
+
+    private void addPath(PathVisitor visitor) {
+        AbstractNode nodeForPath = nodeForPath(visitor.getPath());
+        if (nodeForPath != null) {
+            nodeForPath.addVisitor(visitor);
+        }
+    }
+
+    private VariableNode nextNode(String nodeName, AbstractNode<String> parent) {
+        VariableNode<String, ?> res = parent.getChildNode(nodeName);
+        if (res == null) {
+            res = new VariableNode<>(nodeName, parent);
+            res.id = nodeCount++;
+        }
+        return res;
+    }
+
+    private VariableNode nextNode(Integer index, AbstractNode<Integer> parent) {
+        VariableNode<Integer, ?> res = parent.getChildNode(index);
+        if (res == null) {
+            res = new VariableNode<>(index, parent);
+            res.id = nodeCount++;
+        }
+        return res;
+    }
+
+}
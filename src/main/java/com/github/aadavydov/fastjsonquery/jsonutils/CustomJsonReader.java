@@ -49,8 +49,38 @@ public interface CustomJsonReader {
 
     public String nextName() throws IOException;
 
+    /**
+     * Consumes the next name and looks it up in {@code names}. Readers over a
+     * buffer match the raw key, so no string is created for it.
+     *
+     * @return the slot of the name in {@code names}, or -1 if it is not there
+     */
+    default int nextNameSlot(NameTable names) throws IOException {
+        return names.find(nextName());
+    }
+
     public String nextString() throws IOException;
 
+    /**
+     * Consumes the next number and hands it to {@code sink}. Readers over a
+     * buffer pass a long they have already parsed, or the literal in place, so
+     * no string is created for it.
+     */
+    default void nextNumber(NumberSink sink) throws IOException {
+        String number = nextString();
+        sink.number(number.toCharArray(), 0, number.length());
+    }
+
+    /**
+     * Consumes the next string and hands it to {@code sink}. Readers over a
+     * buffer pass a literal without escapes in place, so no string is created
+     * for it.
+     */
+    default void nextString(StringSink sink) throws IOException {
+        String string = nextString();
+        sink.string(string.toCharArray(), 0, string.length());
+    }
+
     public boolean nextBoolean() throws IOException;
 
     public void nextNull() throws IOException;
@@ -67,4 +97,39 @@ public interface CustomJsonReader {
 
     public String getPath();
 
+    /**
+     * Skips up to {@code count} elements of the current array, stopping early
+     * at its end. Readers that cannot scan ahead cheaply may skip fewer, down
+     * to none, and leave the rest to be read.
+     *
+     * @return the number of elements skipped
+     */
+    default int skipElements(int count) throws IOException {
+        return 0;
+    }
+
+    /**
+     * Skips the rest of the {@code depth} innermost arrays or objects,
+     * including their closing brackets.
+     */
+    default void skipRemaining(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            while (hasNext()) {
+                skipValue();
+            }
+            if (peek() == JsonToken.END_ARRAY) {
+                endArray();
+            } else {
+                endObject();
+            }
+        }
+    }
+
+    /**
+     * Skips whatever is left of the current top-level value.
+     */
+    default void skipToDocumentEnd() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils;
+
+import java.util.Collection;
+
+/**
+ * An open-addressing table of the names a query expects in an object, matched
+ * directly against the characters or the UTF-8 bytes of a key in the reader
+ * buffer, so that keys are never turned into strings just to be looked up.
+ * Hashes are those of {@link String#hashCode()}.
+ */
+public final class NameTable {
+
+    private final String[] names;
+    private final char[][] chars;
+    private final int[] hashes;
+    private final boolean[] ascii;
+    /* Name index + 1 per bucket, 0 for an empty one */
+    private final int[] buckets;
+    private final int mask;
+
+    public NameTable(Collection<String> names) {
+        this.names = names.toArray(new String[0]);
+        int n = this.names.length;
+        this.chars = new char[n][];
+        this.hashes = new int[n];
+        this.ascii = new boolean[n];
+
+        int capacity = 2;
+        while (capacity < n * 2) {
+            capacity <<= 1;
+        }
+        this.buckets = new int[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < n; i++) {
+            String name = this.names[i];
+            chars[i] = name.toCharArray();
+            hashes[i] = name.hashCode();
+            ascii[i] = isAscii(chars[i]);
+            int b = bucket(hashes[i]);
+            while (buckets[b] != 0) {
+                b = (b + 1) & mask;
+            }
+            buckets[b] = i + 1;
+        }
+    }
+
+    private static boolean isAscii(char[] chars) {
+        for (char c : chars) {
+            if (c >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int bucket(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns the slot of {@code name}, or -1.
+     */
+    public int find(String name) {
+        int hash = name.hashCode();
+        for (int b = bucket(hash); buckets[b] != 0; b = (b + 1) & mask) {
+            int i = buckets[b] - 1;
+            if (hashes[i] == hash && names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of the name held in {@code length} chars of
+     * {@code buffer} starting at {@code start}, or -1.
+     *
+     * @param hash the {@link String#hashCode()} of these chars
+     */
+    public int find(char[] buffer, int start, int length, int hash) {
+        for (int b = bucket(hash); buckets[b] != 0; b = (b + 1) & mask) {
+            int i = buckets[b] - 1;
+            if (hashes[i] == hash && matches(chars[i], buffer, start, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of the ASCII name held in {@code length} bytes of
+     * {@code buffer} starting at {@code start}, or -1.
+     *
+     * @param hash the {@link String#hashCode()} of the name
+     */
+    public int find(byte[] buffer, int start, int length, int hash) {
+        for (int b = bucket(hash); buckets[b] != 0; b = (b + 1) & mask) {
+            int i = buckets[b] - 1;
+            if (hashes[i] == hash && ascii[i] && matches(chars[i], buffer, start, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(char[] name, char[] buffer, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(char[] name, byte[] buffer, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
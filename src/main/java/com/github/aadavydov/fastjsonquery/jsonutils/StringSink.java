@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils;
+
+/**
+ * Takes a string from {@link CustomJsonReader#nextString(StringSink)} in the
+ * form the reader has it in: the span of its input when the literal has no
+ * escapes, its decoded chars, or its decoded parts one buffer at a time.
+ */
+public interface StringSink {
+
+    /**
+     * Takes a string as {@code length} chars from {@code start}, only valid
+     * during the call.
+     */
+    public void string(char[] chars, int start, int length);
+
+    /**
+     * Takes a string as {@code length} bytes of UTF-8 from {@code start}, only
+     * valid during the call.
+     */
+    public void string(byte[] utf8, int start, int length);
+
+    /**
+     * Starts a string handed over in parts, by {@link #part(char[], int, int)}
+     * calls up to {@link #end()}. A reader may start over with a new call.
+     */
+    public void begin();
+
+    /**
+     * Takes the next {@code length} chars of the string from {@code start},
+     * only valid during the call.
+     *
+     * @return false if the rest of the string is not needed
+     */
+    public boolean part(char[] chars, int start, int length);
+
+    /**
+     * Ends the string, the parts not taken after {@code part} returned false
+     * included.
+     */
+    public void end();
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes a document scattered over several byte buffers, as produced by
+ * gathering reads. Buffers are read in place between their position and limit;
+ * their positions are not modified. A character split between two buffers is
+ * reassembled in a small carry buffer.
+ */
+public class BufferSequenceCharSource implements CharSource {
+
+    private final DecodingCharSource decoder;
+    private final ByteBuffer carry = ByteBuffer.allocate(8);
+
+    /* Duplicates of the caller's buffers, so that their positions stay intact */
+    private ByteBuffer[] buffers = new ByteBuffer[0];
+    private int count;
+    private int next;
+
+    public BufferSequenceCharSource(Charset charset) {
+        this.decoder = new DecodingCharSource(charset);
+    }
+
+    public void reset(ByteBuffer[] buffers) {
+        if (this.buffers.length < buffers.length) {
+            this.buffers = new ByteBuffer[buffers.length];
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            this.buffers[i] = buffers[i].duplicate();
+        }
+        this.count = buffers.length;
+        this.next = 0;
+        ByteBuffer first = nextBuffer();
+        if (first == null) {
+            carry.clear();
+            carry.flip();
+            first = carry;
+        }
+        decoder.reset(first, !hasMoreBytes());
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            int n = decoder.read(buffer, offset, length);
+            if (n > 0 || !hasMoreBytes()) {
+                return n;
+            }
+            ByteBuffer current = decoder.getInput();
+            if (current.hasRemaining()) {
+                // An incomplete character: complete it with bytes of the following buffers
+                ByteBuffer carry = this.carry;
+                if (current == carry) {
+                    carry.compact();
+                } else {
+                    carry.clear();
+                    carry.put(current);
+                }
+                while (carry.position() < 4 && hasMoreBytes()) {
+                    ByteBuffer b = buffers[next];
+                    if (b.hasRemaining()) {
+                        carry.put(b.get());
+                    } else {
+                        next++;
+                    }
+                }
+                carry.flip();
+                decoder.append(carry, !hasMoreBytes());
+            } else {
+                decoder.append(nextBuffer(), !hasMoreBytes());
+            }
+        }
+    }
+
+    private ByteBuffer nextBuffer() {
+        while (next < count) {
+            ByteBuffer b = buffers[next++];
+            if (b.hasRemaining()) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasMoreBytes() {
+        for (int i = next; i < count; i++) {
+            if (buffers[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < count; i++) {
+            buffers[i] = null;
+        }
+        count = 0;
+        decoder.close();
+    }
+
+}
@@ -26,88 +26,126 @@
 package com.github.aadavydov.fastjsonquery.jsonutils.reader;
 
 import com.github.aadavydov.fastjsonquery.jsonutils.CharsCollector;
-import sun.nio.cs.ArrayDecoder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CoderResult;
 
 public class CharBufferJsonReader extends ReusableJsonReader {
 
-    private final CharsetDecoder decoder;
+    /**
+     * Size of the decoding window used for binary and streamed input, in chars. Numbers
+     * longer than the window are reported as unquoted literals, so it should not
+     * be made too small.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    private final Charset charset;
+    private final DecodingCharSource decodingSource;
+    private final CharSequenceCharSource sequenceSource = new CharSequenceCharSource();
+    private BufferSequenceCharSource bufferSequenceSource = null;
+    private final int windowSize;
     private char[] charData = null;
     private int clen;
 
     public CharBufferJsonReader(Charset charset) {
-        this.decoder = charset.newDecoder();
+        this(charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    public CharBufferJsonReader(Charset charset, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize <= 0");
+        }
+        this.charset = charset;
+        this.decodingSource = new DecodingCharSource(charset);
+        this.windowSize = windowSize;
     }
 
     public void setup(CharsCollector stringData) {
-        super.setup(null, stringData.getData(), 0, stringData.getLength());
+        super.setup((CharSource) null, stringData.getData(), 0, stringData.getLength());
     }
 
     public void setup(StringBuilder stringData) {
-
-        clen = stringData.length();
-
-        if (charData == null || charData.length < clen) {
-            charData = new char[clen];
-        }
-
-        stringData.getChars(0, clen, charData, 0);
-        super.setup(null, charData, 0, clen);
+        setup((CharSequence) stringData);
     }
 
     public void setup(String stringData) {
+        setup((CharSequence) stringData);
+    }
+
+    /**
+     * Prepares to read {@code stringData}. Text that fits in one window is
+     * copied into the reader buffer in one go. Longer text is read window by
+     * window, so only the part of it the parser reaches is copied.
+     */
+    public void setup(CharSequence stringData) {
 
         clen = stringData.length();
 
+        if (clen > windowSize) {
+            sequenceSource.reset(stringData);
+            setupWindow(sequenceSource);
+            return;
+        }
+
         if (charData == null || charData.length < clen) {
-            charData = new char[clen];
+            charData = new char[Math.max(clen, windowSize)];
         }
 
-        stringData.getChars(0, clen, charData, 0);
-        super.setup(null, charData, 0, clen);
+        sequenceSource.reset(stringData);
+        sequenceSource.read(charData, 0, clen);
+        sequenceSource.close();
+        super.setup((CharSource) null, charData, 0, clen);
     }
 
+    /**
+     * Prepares to read {@code binData}. Nothing is decoded up front: bytes are
+     * decoded window by window as the parser advances, so a predicate decided
+     * near the top of a document never pays for decoding the rest of it.
+     */
     public void setup(byte[] binData) throws IOException {
-        setBinData(binData);
-        super.setup(null, charData, 0, clen);
+        setup(binData, 0, binData.length);
     }
 
-    private void setBinData(byte[] binData) throws IOException {
+    public void setup(byte[] binData, int offset, int length) throws IOException {
+        decodingSource.reset(binData, offset, length);
+        setupWindow(decodingSource);
+    }
 
-        int estSize = (int) (decoder.maxCharsPerByte() * binData.length) + 1;
+    /**
+     * Prepares to read the bytes between the position and the limit of
+     * {@code binData}, heap or direct, without copying them. The position of
+     * {@code binData} is left untouched.
+     */
+    public void setup(ByteBuffer binData) {
+        decodingSource.reset(binData.duplicate(), true);
+        setupWindow(decodingSource);
+    }
 
-        if (charData == null || charData.length < estSize) {
-            charData = new char[estSize];
+    /**
+     * Prepares to read a document scattered over {@code binData}, in order. The
+     * positions of the buffers are left untouched.
+     */
+    public void setup(ByteBuffer[] binData) {
+        if (bufferSequenceSource == null) {
+            bufferSequenceSource = new BufferSequenceCharSource(charset);
         }
+        bufferSequenceSource.reset(binData);
+        setupWindow(bufferSequenceSource);
+    }
 
-        decoder.reset();
-
-        if (decoder instanceof ArrayDecoder) {
-            ArrayDecoder ad = (ArrayDecoder) decoder;
-            clen = ad.decode(binData, 0, binData.length, charData);
-        } else {
-            CharBuffer wrap = CharBuffer.wrap(charData, 0, charData.length);
-            CoderResult cr = decoder.decode(ByteBuffer.wrap(binData, 0, binData.length), wrap, true);
-
-            if (!cr.isUnderflow()) {
-                cr.throwException();
-            }
-
-            cr = decoder.flush(wrap);
-
-            if (!cr.isUnderflow()) {
-                cr.throwException();
-            }
+    /**
+     * Prepares to read whatever {@code source} supplies, one window at a time.
+     */
+    public void setup(CharSource source) {
+        setupWindow(source);
+    }
 
-            clen = wrap.position();
+    private void setupWindow(CharSource source) {
+        if (charData == null || charData.length < windowSize) {
+            charData = new char[windowSize];
         }
-
+        super.setup(source, charData, 0, 0);
     }
 
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.nio.CharBuffer;
+
+/**
+ * Reads a {@link CharSequence} in place, one window per call, using bulk
+ * {@code getChars} where the sequence type offers it and {@code charAt}
+ * otherwise. Only the part of the text the reader reaches is ever copied.
+ */
+public class CharSequenceCharSource implements CharSource {
+
+    private CharSequence text;
+    private int pos;
+    private int limit;
+
+    public void reset(CharSequence text) {
+        this.text = text;
+        this.pos = 0;
+        this.limit = text.length();
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        int n = Math.min(length, limit - pos);
+        if (n <= 0) {
+            return text == null || limit == pos ? -1 : 0;
+        }
+        CharSequence text = this.text;
+        int end = pos + n;
+        if (text instanceof String) {
+            ((String) text).getChars(pos, end, buffer, offset);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(pos, end, buffer, offset);
+        } else if (text instanceof StringBuffer) {
+            ((StringBuffer) text).getChars(pos, end, buffer, offset);
+        } else if (text instanceof CharBuffer) {
+            CharBuffer cb = (CharBuffer) text;
+            int p = cb.position();
+            cb.position(p + pos);
+            cb.get(buffer, offset, n);
+            cb.position(p);
+        } else {
+            for (int i = pos; i < end; i++) {
+                buffer[offset++] = text.charAt(i);
+            }
+        }
+        pos = end;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        text = null;
+    }
+
+}
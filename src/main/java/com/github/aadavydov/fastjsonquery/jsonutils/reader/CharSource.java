@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Supplies characters to {@link ReusableJsonReader} when its buffer runs dry.
+ * A lighter alternative to {@link java.io.Reader}: no locking, no skip/mark
+ * support, and implementations are free to be reused between documents.
+ */
+public interface CharSource extends Closeable {
+
+    /**
+     * Reads up to {@code length} characters into {@code buffer} starting at
+     * {@code offset}.
+     *
+     * @return the number of characters read, or -1 if the input is exhausted
+     */
+    int read(char[] buffer, int offset, int length) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes bytes into the reader buffer one window at a time, so that a reader
+ * which stops early never pays for decoding the rest of the input.
+ * <p>
+ * For charsets that encode US-ASCII as single bytes, runs of ASCII bytes are
+ * widened directly without going through the {@link CharsetDecoder}.
+ * <p>
+ * Malformed input throws {@link java.nio.charset.MalformedInputException},
+ * but only once the chars before it have been read, so that it is reported
+ * when a reader gets to it rather than when it happens to be decoded ahead.
+ */
+public class DecodingCharSource implements CharSource {
+
+    private final CharsetDecoder decoder;
+    private final boolean asciiCompatible;
+
+    private ByteBuffer input;
+    private boolean endOfInput;
+    private boolean flushed;
+
+    /* Cached wrappers, reused while the same arrays are passed in. */
+    private ByteBuffer wrappedInput;
+    private CharBuffer wrappedOutput;
+
+    /* A surrogate pair decoded when only one char was free; pair[1] is pending */
+    private final char[] pair = new char[2];
+    private final CharBuffer pairOutput = CharBuffer.wrap(pair);
+    private boolean lowSurrogatePending;
+
+    /* The last decoding stopped at an incomplete character */
+    private boolean incomplete;
+
+    public DecodingCharSource(Charset charset) {
+        this.decoder = charset.newDecoder();
+        this.asciiCompatible = StandardCharsets.UTF_8.equals(charset)
+                || StandardCharsets.US_ASCII.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * Sets a complete document held in {@code length} bytes of {@code data}
+     * starting at {@code offset}. The array is not copied.
+     */
+    public void reset(byte[] data, int offset, int length) {
+        ByteBuffer bb = wrappedInput;
+        if (bb == null || bb.array() != data) {
+            bb = wrappedInput = ByteBuffer.wrap(data);
+        }
+        bb.clear();
+        bb.position(offset);
+        bb.limit(offset + length);
+        reset(bb, true);
+    }
+
+    /**
+     * Sets the bytes to decode. The buffer position is advanced as bytes get
+     * decoded. When {@code endOfInput} is false, an incomplete character at the
+     * end of the buffer is left in it for the caller to complete, see
+     * {@link #append(ByteBuffer, boolean)}.
+     */
+    public void reset(ByteBuffer input, boolean endOfInput) {
+        decoder.reset();
+        this.input = input;
+        this.endOfInput = endOfInput;
+        this.flushed = false;
+        this.lowSurrogatePending = false;
+        this.incomplete = false;
+    }
+
+    /**
+     * Continues decoding from {@code input}, which must start with the bytes left
+     * undecoded in the previous buffer.
+     */
+    public void append(ByteBuffer input, boolean endOfInput) {
+        this.input = input;
+        this.endOfInput = endOfInput;
+        this.incomplete = false;
+    }
+
+    public ByteBuffer getInput() {
+        return input;
+    }
+
+    /**
+     * Returns true if the bytes left in the input are an incomplete character,
+     * rather than bytes not decoded yet for lack of room.
+     */
+    public boolean hasIncompleteCharacter() {
+        return incomplete && input != null && input.hasRemaining();
+    }
+
+    /**
+     * Reads at least one char unless {@code length} is zero or the input is
+     * exhausted, in which case -1 is returned. Zero is also returned when the
+     * input ends with an incomplete character and more input may follow.
+     */
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        ByteBuffer in = input;
+        if (in == null || length == 0) {
+            return in == null ? -1 : 0;
+        }
+
+        int n = 0;
+        if (lowSurrogatePending) {
+            lowSurrogatePending = false;
+            buffer[offset] = pair[1];
+            n = 1;
+        }
+        if (asciiCompatible && n < length) {
+            n += widenAscii(in, buffer, offset + n, length - n);
+        }
+        if (n < length && in.hasRemaining()) {
+            n += decode(in, buffer, offset + n, length - n, n == 0);
+        }
+        if (n == 0 && !in.hasRemaining()) {
+            if (endOfInput && !flushed) {
+                n = flush(in, buffer, offset, length);
+            }
+            return n == 0 ? -1 : n;
+        }
+        return n;
+    }
+
+    private int widenAscii(ByteBuffer in, char[] buffer, int offset, int length) {
+        int p = in.position();
+        int n = Math.min(length, in.limit() - p);
+        int i = 0;
+        if (in.hasArray()) {
+            byte[] data = in.array();
+            int base = in.arrayOffset() + p;
+            while (i < n) {
+                byte b = data[base + i];
+                if (b < 0) {
+                    break;
+                }
+                buffer[offset + i] = (char) b;
+                i++;
+            }
+        } else {
+            while (i < n) {
+                byte b = in.get(p + i);
+                if (b < 0) {
+                    break;
+                }
+                buffer[offset + i] = (char) b;
+                i++;
+            }
+        }
+        in.position(p + i);
+        return i;
+    }
+
+    /**
+     * @param report whether to throw on malformed input if no char precedes
+     *               it; otherwise the decoder reports it again on the next read
+     */
+    private int decode(ByteBuffer in, char[] buffer, int offset, int length, boolean report) throws IOException {
+        CharBuffer out = output(buffer, offset, length);
+        CoderResult cr = decoder.decode(in, out, endOfInput);
+        int n = out.position() - offset;
+        if (cr.isError()) {
+            if (n == 0 && report) {
+                cr.throwException();
+            }
+            incomplete = false;
+            return n;
+        }
+        if (n == 0 && cr.isOverflow()) {
+            // a surrogate pair does not fit in one char: hand out the high surrogate now
+            CharBuffer pairOut = pairOutput;
+            pairOut.clear();
+            cr = decoder.decode(in, pairOut, endOfInput);
+            if (cr.isError()) {
+                cr.throwException();
+            }
+            if (pairOut.position() > 0) {
+                buffer[offset] = pair[0];
+                lowSurrogatePending = pairOut.position() > 1;
+                n = 1;
+            }
+        }
+        incomplete = cr.isUnderflow();
+        return n;
+    }
+
+    private int flush(ByteBuffer in, char[] buffer, int offset, int length) throws IOException {
+        CharBuffer out = output(buffer, offset, length);
+        // the decoder may not have seen the end of input yet if it was all ASCII
+        CoderResult cr = decoder.decode(in, out, true);
+        if (cr.isUnderflow()) {
+            cr = decoder.flush(out);
+        }
+        if (cr.isUnderflow()) {
+            flushed = true;
+        } else if (cr.isError()) {
+            cr.throwException();
+        }
+        return out.position() - offset;
+    }
+
+    private CharBuffer output(char[] buffer, int offset, int length) {
+        CharBuffer out = wrappedOutput;
+        if (out == null || out.array() != buffer) {
+            out = wrappedOutput = CharBuffer.wrap(buffer);
+        }
+        out.clear();
+        out.position(offset);
+        out.limit(offset + length);
+        return out;
+    }
+
+    @Override
+    public void close() {
+        input = null;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes a file through memory-mapped segments. Segments are mapped one at a
+ * time as the reader advances, so pages past the point where the reader stops
+ * are never touched, and files larger than 2 GB are read as a sequence of
+ * segments. A segment boundary may fall inside a multi-byte character: the
+ * next segment is then mapped starting at that character.
+ */
+public class MappedCharSource implements CharSource {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private final DecodingCharSource decoder;
+    private final long segmentSize;
+
+    private FileChannel channel;
+    private long size;
+    private long segmentStart;
+    private MappedByteBuffer segment;
+
+    public MappedCharSource(Charset charset) {
+        this(charset, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedCharSource(Charset charset, long segmentSize) {
+        if (segmentSize < 4 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentSize " + segmentSize);
+        }
+        this.decoder = new DecodingCharSource(charset);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Starts reading {@code channel} from its beginning. The channel is not
+     * closed by this source, it must stay open while the reader is in use.
+     */
+    public void reset(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.segmentStart = 0;
+        this.segment = null;
+        map(0, true);
+    }
+
+    /**
+     * Returns the file offset of the first byte not decoded yet.
+     */
+    public long getPosition() {
+        return segment == null ? segmentStart : segmentStart + segment.position();
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            int n = decoder.read(buffer, offset, length);
+            if (n > 0 || segment == null || segmentStart + segment.limit() == size) {
+                return n;
+            }
+            map(getPosition(), false);
+        }
+    }
+
+    private void map(long start, boolean first) throws IOException {
+        long len = Math.min(segmentSize, size - start);
+        segmentStart = start;
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+        boolean last = start + len == size;
+        if (first) {
+            decoder.reset(segment, last);
+        } else {
+            decoder.append(segment, last);
+        }
+    }
+
+    /**
+     * Drops the current mapping. The channel itself is left open.
+     */
+    @Override
+    public void close() {
+        channel = null;
+        segment = null;
+        decoder.close();
+    }
+
+}
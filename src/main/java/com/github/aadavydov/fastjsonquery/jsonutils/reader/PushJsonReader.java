@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A reader for input that arrives in chunks, as on a non-blocking channel. Each
+ * chunk is decoded in place while {@link #feed(ByteBuffer)} is the latest one;
+ * a read that goes past the bytes fed so far throws
+ * {@link NeedMoreInputException}. The reader then has to be {@link #rewind()
+ * rewound} to its last {@link #mark()} and the read retried once the next
+ * chunk has been fed. Only the token being read when the chunk ran out is
+ * scanned again.
+ */
+public class PushJsonReader extends ReusableJsonReader {
+
+    private final ChunkCharSource source;
+    private final int windowSize;
+    private char[] charData = null;
+
+    public PushJsonReader(Charset charset) {
+        this(charset, CharBufferJsonReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    public PushJsonReader(Charset charset, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize <= 0");
+        }
+        this.source = new ChunkCharSource(charset);
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Starts a new document, with nothing fed yet.
+     */
+    public void reset() {
+        if (charData == null) {
+            charData = new char[windowSize];
+        }
+        source.reset();
+        setup(source, charData, 0, 0);
+        mark();
+    }
+
+    /**
+     * Makes the bytes between the position and the limit of {@code chunk} the
+     * next part of the document. The chunk is read in place, advancing its
+     * position, until a read runs past its end; the few bytes of a character
+     * split at the end are copied, so the chunk may be reused after that.
+     */
+    public void feed(ByteBuffer chunk) {
+        source.feed(chunk);
+    }
+
+    /**
+     * Tells the reader that nothing follows the bytes fed so far.
+     */
+    public void endOfInput() {
+        source.finish();
+    }
+
+    private static final class ChunkCharSource implements CharSource {
+
+        /* The longest incomplete character, as in UTF-8 */
+        private static final int MAX_INCOMPLETE = 3;
+
+        private final DecodingCharSource decoder;
+        private final ByteBuffer carry = ByteBuffer.allocate(8);
+        private ByteBuffer chunk;
+        private boolean endOfInput;
+
+        ChunkCharSource(Charset charset) {
+            this.decoder = new DecodingCharSource(charset);
+        }
+
+        void reset() {
+            carry.clear();
+            carry.flip();
+            chunk = null;
+            endOfInput = false;
+            decoder.reset(carry, false);
+        }
+
+        void feed(ByteBuffer chunk) {
+            this.chunk = chunk;
+            if (carry.hasRemaining()) {
+                topUpCarry();
+            } else {
+                decoder.append(chunk, false);
+            }
+        }
+
+        void finish() {
+            endOfInput = true;
+            chunk = null;
+            decoder.append(decoder.getInput(), true);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            while (true) {
+                int n = decoder.read(buffer, offset, length);
+                if (n > 0 || endOfInput) {
+                    return n;
+                }
+                ByteBuffer chunk = this.chunk;
+                if (decoder.getInput() == carry && chunk != null && chunk.hasRemaining()) {
+                    if (carry.hasRemaining()) {
+                        topUpCarry();
+                    } else {
+                        decoder.append(chunk, false);
+                    }
+                    continue;
+                }
+                // Keep an incomplete character until the next chunk completes it
+                ByteBuffer input = decoder.getInput();
+                if (input != carry) {
+                    if (input.hasRemaining() && (!decoder.hasIncompleteCharacter() || input.remaining() > MAX_INCOMPLETE)) {
+                        throw new IOException(input.remaining() + " bytes left undecoded");
+                    }
+                    carry.clear();
+                    carry.put(input);
+                    carry.flip();
+                    decoder.append(carry, false);
+                }
+                this.chunk = null;
+                throw NeedMoreInputException.INSTANCE;
+            }
+        }
+
+        private void topUpCarry() {
+            ByteBuffer carry = this.carry;
+            carry.compact();
+            while (carry.position() < 4 && chunk.hasRemaining()) {
+                carry.put(chunk.get());
+            }
+            carry.flip();
+            decoder.append(carry, false);
+        }
+
+        @Override
+        public void close() {
+            chunk = null;
+            decoder.close();
+        }
+
+    }
+
+}
@@ -42,12 +42,16 @@
 package com.github.aadavydov.fastjsonquery.jsonutils.reader;
 
 import com.github.aadavydov.fastjsonquery.jsonutils.CustomJsonReader;
+import com.github.aadavydov.fastjsonquery.jsonutils.NameTable;
+import com.github.aadavydov.fastjsonquery.jsonutils.NumberSink;
+import com.github.aadavydov.fastjsonquery.jsonutils.StringSink;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.MalformedJsonException;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * Ported from com.google.code.gson:gson:com.google.gson.stream.JsonReader with some optimisations
@@ -59,6 +63,32 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
      */
     private static final char[] NON_EXECUTE_PREFIX = ")]}'\n".toCharArray();
     private static final long MIN_INCOMPLETE_INTEGER = Long.MIN_VALUE / 10;
+    /**
+     * Precedes every text of an RFC 7464 JSON text sequence
+     */
+    private static final int RECORD_SEPARATOR = 0x1E;
+
+    /*
+     * Classes of the characters skipStructure() stops at; all others are 0.
+     */
+    private static final byte SKIP_QUOTE = 1;
+    private static final byte SKIP_OPEN = 2;
+    private static final byte SKIP_CLOSE = 3;
+    private static final byte SKIP_NEWLINE = 4;
+    private static final byte SKIP_BACKSLASH = 5;
+    private static final byte SKIP_COMMA = 6;
+    private static final byte[] SKIP_CLASS = new byte[128];
+
+    static {
+        SKIP_CLASS['"'] = SKIP_QUOTE;
+        SKIP_CLASS['{'] = SKIP_OPEN;
+        SKIP_CLASS['['] = SKIP_OPEN;
+        SKIP_CLASS['}'] = SKIP_CLOSE;
+        SKIP_CLASS[']'] = SKIP_CLOSE;
+        SKIP_CLASS['\n'] = SKIP_NEWLINE;
+        SKIP_CLASS['\\'] = SKIP_BACKSLASH;
+        SKIP_CLASS[','] = SKIP_COMMA;
+    }
 
     private static final int PEEKED_NONE = 0;
     private static final int PEEKED_BEGIN_OBJECT = 1;
@@ -98,11 +128,15 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
     /**
      * The input JSON.
      */
-    private Reader in;
+    private CharSource in;
     /**
      * True to accept non-spec compliant JSON
      */
     private boolean lenient = false;
+    /**
+     * True to read a sequence of top-level values, see {@link #setDocumentSequence(boolean)}
+     */
+    private boolean documentSequence = false;
     /**
      * Use a manual buffer to easily read and unread upcoming characters, and
      * also so we can create strings without an intermediate StringBuilder. We
@@ -133,6 +167,11 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
      */
     private String peekedString;
 
+    /**
+     * An escaped character of a value handed to a {@link StringSink}.
+     */
+    private final char[] escaped = new char[1];
+
     /*
      * The nesting stack. Using a manual array rather than an ArrayList saves 20%.
      */
@@ -149,6 +188,26 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
     private String[] pathNames = new String[32];
     private int[] pathIndices = new int[32];
 
+    /*
+     * Resumable mode, see mark(). While markPos >= 0 fillBuffer() keeps
+     * everything from markPos on, growing the buffer when it has to, so that
+     * rewind() can go back to the mark after the source ran dry.
+     */
+    private int markPos = -1;
+    private int markLineNumber;
+    private int markLineStart;
+    private int markPeeked;
+    private long markPeekedLong;
+    private int markPeekedNumberLength;
+    private String markPeekedString;
+    private int markStackSize;
+    private int markStackTop;
+    private int markSkipCount;
+    /*
+     * Depth of a skipValue() that was interrupted by rewind(), 0 if none.
+     */
+    private int skipCount = 0;
+
     {
         stack[stackSize++] = JsonScope.EMPTY_DOCUMENT;
     }
@@ -160,7 +219,15 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
      * Creates a new instance that reads a JSON-encoded stream from {@code in}.
      */
     final void setup(Reader in, char[] buffer, int pos, int limit) {
-        this.in = in; //null reader is applicable
+        setup(in == null ? null : new ReaderCharSource(in), buffer, pos, limit);
+    }
+
+    /**
+     * Prepares this reader to parse {@code buffer[pos..limit)} followed by
+     * whatever {@code in} supplies when the buffer runs out.
+     */
+    final void setup(CharSource in, char[] buffer, int pos, int limit) {
+        this.in = in; //null source is applicable
         if (buffer == null) {
             throw new NullPointerException("in == null");
         }
@@ -180,6 +247,60 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         stackSize = 0;
         stack[stackSize++] = JsonScope.EMPTY_DOCUMENT;
 
+        markPos = -1;
+        skipCount = 0;
+
+    }
+
+    /**
+     * Records the current state and switches this reader to resumable mode: from
+     * now on the source may throw {@link NeedMoreInputException} at any read,
+     * after which {@link #rewind()} brings the reader back to the last mark. In
+     * this mode {@link #peek()} loads a string token entirely, so consuming it
+     * afterwards does not read from the source, and {@link #skipValue()} marks
+     * after every token it skips, see {@link #resumeSkip()}.
+     */
+    public final void mark() {
+        markPos = pos;
+        markLineNumber = lineNumber;
+        markLineStart = lineStart;
+        markPeeked = peeked;
+        markPeekedLong = peekedLong;
+        markPeekedNumberLength = peekedNumberLength;
+        markPeekedString = peekedString;
+        markStackSize = stackSize;
+        markStackTop = stack[stackSize - 1];
+        markSkipCount = skipCount;
+    }
+
+    /**
+     * Returns to the state recorded by the last {@link #mark()}. Characters read
+     * from the source since then are kept, so nothing is read twice.
+     */
+    public final void rewind() {
+        pos = markPos;
+        lineNumber = markLineNumber;
+        lineStart = markLineStart;
+        peeked = markPeeked;
+        peekedLong = markPeekedLong;
+        peekedNumberLength = markPeekedNumberLength;
+        peekedString = markPeekedString;
+        stackSize = markStackSize;
+        stack[stackSize - 1] = markStackTop;
+        skipCount = markSkipCount;
+    }
+
+    /**
+     * Completes a {@link #skipValue()} interrupted by running out of input.
+     *
+     * @return false if there was none
+     */
+    public final boolean resumeSkip() throws IOException {
+        if (skipCount == 0) {
+            return false;
+        }
+        skipValue();
+        return true;
     }
 
     /**
@@ -222,6 +343,21 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         this.lenient = lenient;
     }
 
+    public final boolean isDocumentSequence() {
+        return documentSequence;
+    }
+
+    /**
+     * Configure this parser to read any number of top-level values, concatenated
+     * or separated by whitespace or by RFC 7464 record separators ({@code 0x1E}),
+     * without being lenient. The end of the input is then reported as
+     * {@link JsonToken#END_DOCUMENT} before the first value as well as between
+     * values. Use {@link #skipToDocumentEnd()} to leave a value unfinished.
+     */
+    public final void setDocumentSequence(boolean documentSequence) {
+        this.documentSequence = documentSequence;
+    }
+
     /**
      * Consumes the next token from the JSON stream and asserts that it is the
      * beginning of a new array.
@@ -312,6 +448,9 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         int p = peeked;
         if (p == PEEKED_NONE) {
             p = doPeek();
+            if (markPos >= 0) {
+                loadString(p);
+            }
         }
 
         switch (p) {
@@ -423,13 +562,22 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                 consumeNonExecutePrefix();
             }
             stack[stackSize - 1] = JsonScope.NONEMPTY_DOCUMENT;
-        } else if (peekStack == JsonScope.NONEMPTY_DOCUMENT) {
-            int c = nextNonWhitespace(false);
-            if (c == -1) {
+            if (documentSequence && !nextDocument()) {
                 return peeked = PEEKED_EOF;
+            }
+        } else if (peekStack == JsonScope.NONEMPTY_DOCUMENT) {
+            if (documentSequence) {
+                if (!nextDocument()) {
+                    return peeked = PEEKED_EOF;
+                }
             } else {
-                checkLenient();
-                pos--;
+                int c = nextNonWhitespace(false);
+                if (c == -1) {
+                    return peeked = PEEKED_EOF;
+                } else {
+                    checkLenient();
+                    pos--;
+                }
             }
         } else if (peekStack == JsonScope.CLOSED) {
             throw new IllegalStateException("JsonReader is closed");
@@ -483,6 +631,57 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         return peeked = PEEKED_UNQUOTED;
     }
 
+    /**
+     * Makes sure the whole string token just peeked is in the buffer.
+     */
+    private void loadString(int p) throws IOException {
+        if (p == PEEKED_DOUBLE_QUOTED || p == PEEKED_DOUBLE_QUOTED_NAME) {
+            loadQuoted('"');
+        } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_SINGLE_QUOTED_NAME) {
+            loadQuoted('\'');
+        } else if (p == PEEKED_UNQUOTED || p == PEEKED_UNQUOTED_NAME) {
+            int i = 0;
+            while (true) {
+                for (; pos + i < limit; i++) {
+                    if (!isLiteral(buffer[pos + i])) {
+                        return;
+                    }
+                }
+                if (!fillBuffer(i + 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void loadQuoted(char quote) throws IOException {
+        int i = 0;
+        while (true) {
+            char[] buffer = this.buffer;
+            int l = limit;
+            int p = pos + i;
+            while (p < l) {
+                char c = buffer[p++];
+                if (c == quote) {
+                    return;
+                } else if (c == '\\') {
+                    if (p == l) {
+                        // look at the escape again once it is there
+                        p--;
+                        break;
+                    }
+                    // a unicode escape takes its four digits, even a quote
+                    p += buffer[p] == 'u' ? 5 : 1;
+                }
+            }
+            i = p - pos;
+            // an unterminated string is reported when it gets consumed
+            if (!fillBuffer(Math.max(p, l + 1) - pos)) {
+                return;
+            }
+        }
+    }
+
     private int peekKeyword() throws IOException {
         // Figure out which keyword we're matching against by its first character.
         char c = buffer[pos];
@@ -551,6 +750,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                 if (!fillBuffer(i + 1)) {
                     break;
                 }
+                buffer = this.buffer;
                 p = pos;
                 l = limit;
             }
@@ -683,6 +883,50 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         return result;
     }
 
+    /**
+     * Consumes the next name like {@link #nextName()}, but matches a quoted
+     * name in place against {@code names}. A string is only created for names
+     * with escapes or split by the end of the buffer.
+     */
+    @Override
+    public int nextNameSlot(NameTable names) throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        int slot;
+        if (p == PEEKED_UNQUOTED_NAME) {
+            slot = names.find(nextUnquotedValue());
+        } else if (p == PEEKED_SINGLE_QUOTED_NAME) {
+            slot = findQuotedName(names, '\'');
+        } else if (p == PEEKED_DOUBLE_QUOTED_NAME) {
+            slot = findQuotedName(names, '"');
+        } else {
+            throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+        }
+        peeked = PEEKED_NONE;
+        pathNames[stackSize - 1] = slot < 0 ? null : names.name(slot);
+        return slot;
+    }
+
+    private int findQuotedName(NameTable names, char quote) throws IOException {
+        char[] buffer = this.buffer;
+        int start = pos;
+        int l = limit;
+        int h = 0;
+        for (int p = start; p < l; p++) {
+            char c = buffer[p];
+            if (c == quote) {
+                pos = p + 1;
+                return names.find(buffer, start, p - start, h);
+            } else if (c == '\\' || c == '\n') {
+                break;
+            }
+            h = 31 * h + c;
+        }
+        return names.find(nextQuotedValue(quote));
+    }
+
     /**
      * Returns the {@link com.google.gson.stream.JsonToken#STRING string} value
      * of the next token, consuming it. If the next token is a number, this
@@ -719,6 +963,66 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         return result;
     }
 
+    @Override
+    public void nextString(StringSink sink) throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        char quote;
+        if (p == PEEKED_DOUBLE_QUOTED) {
+            quote = '"';
+        } else if (p == PEEKED_SINGLE_QUOTED) {
+            quote = '\'';
+        } else {
+            String string = nextString();
+            sink.string(string.toCharArray(), 0, string.length());
+            return;
+        }
+        char[] buffer = this.buffer;
+        int start = pos;
+        int l = limit;
+        for (int i = start; i < l; i++) {
+            char c = buffer[i];
+            if (c == quote) {
+                pos = i + 1;
+                peeked = PEEKED_NONE;
+                pathIndices[stackSize - 1]++;
+                sink.string(buffer, start, i - start);
+                return;
+            } else if (c == '\\' || c == '\n') {
+                break;
+            }
+        }
+        sink.begin();
+        streamQuotedValue(quote, sink);
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        sink.end();
+    }
+
+    @Override
+    public void nextNumber(NumberSink sink) throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_LONG) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            sink.number(peekedLong);
+        } else if (p == PEEKED_NUMBER) {
+            int start = pos;
+            pos += peekedNumberLength;
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            sink.number(buffer, start, peekedNumberLength);
+        } else {
+            String number = nextString();
+            sink.number(number.toCharArray(), 0, number.length());
+        }
+    }
+
     /**
      * Returns the {@link com.google.gson.stream.JsonToken#BOOLEAN boolean}
      * value of the next token, consuming it.
@@ -875,9 +1179,9 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
      */
     private String nextQuotedValue(char quote) throws IOException {
         // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
-        char[] buffer = this.buffer;
         StringBuilder builder = null;
         while (true) {
+            char[] buffer = this.buffer;
             int p = pos;
             int l = limit;
             /* the index of the first character not yet appended to the builder. */
@@ -903,6 +1207,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                     }
                     builder.append(buffer, start, len);
                     builder.append(readEscapeCharacter());
+                    buffer = this.buffer;
                     p = pos;
                     l = limit;
                     start = p;
@@ -924,6 +1229,58 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         }
     }
 
+    /**
+     * Like {@link #nextQuotedValue(char)}, but hands the value to {@code sink}
+     * a part at a time as the buffer is refilled, and skips the rest once the
+     * sink has had enough, so that nothing of the value is kept.
+     */
+    private void streamQuotedValue(char quote, StringSink sink) throws IOException {
+        while (true) {
+            char[] buffer = this.buffer;
+            int p = pos;
+            int l = limit;
+            /* the index of the first character not yet handed to the sink. */
+            int start = p;
+            while (p < l) {
+                int c = buffer[p++];
+
+                if (c == quote) {
+                    pos = p;
+                    sink.part(buffer, start, p - start - 1);
+                    return;
+                } else if (c == '\\') {
+                    pos = p;
+                    if (!sink.part(buffer, start, p - start - 1)) {
+                        readEscapeCharacter();
+                        skipQuotedValue(quote);
+                        return;
+                    }
+                    escaped[0] = readEscapeCharacter();
+                    if (!sink.part(escaped, 0, 1)) {
+                        skipQuotedValue(quote);
+                        return;
+                    }
+                    buffer = this.buffer;
+                    p = pos;
+                    l = limit;
+                    start = p;
+                } else if (c == '\n') {
+                    lineNumber++;
+                    lineStart = p;
+                }
+            }
+
+            pos = p;
+            if (!sink.part(buffer, start, p - start)) {
+                skipQuotedValue(quote);
+                return;
+            }
+            if (!fillBuffer(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
     /**
      * Returns an unquoted value as a string.
      */
@@ -985,8 +1342,8 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
 
     private void skipQuotedValue(char quote) throws IOException {
         // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
-        char[] buffer = this.buffer;
         do {
+            char[] buffer = this.buffer;
             int p = pos;
             int l = limit;
             /* the index of the first character not yet appended to the builder. */
@@ -998,6 +1355,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                 } else if (c == '\\') {
                     pos = p;
                     readEscapeCharacter();
+                    buffer = this.buffer;
                     p = pos;
                     l = limit;
                 } else if (c == '\n') {
@@ -1101,7 +1459,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
     }
 
     /**
-     * Closes this JSON reader and the underlying {@link java.io.Reader}.
+     * Closes this JSON reader and the underlying {@link CharSource}.
      */
     public void close() throws IOException {
         peeked = PEEKED_NONE;
@@ -1120,7 +1478,20 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
      * stream contains unrecognized or unhandled values.
      */
     public void skipValue() throws IOException {
-        int count = 0;
+        int count = skipCount;
+        if (count == 0 && !lenient && markPos < 0) {
+            int p = peeked;
+            if (p == PEEKED_NONE) {
+                p = doPeek();
+            }
+            if (p == PEEKED_BEGIN_ARRAY || p == PEEKED_BEGIN_OBJECT) {
+                peeked = PEEKED_NONE;
+                skipStructure(1);
+                pathIndices[stackSize - 1]++;
+                pathNames[stackSize - 1] = "null";
+                return;
+            }
+        }
         do {
             int p = peeked;
             if (p == PEEKED_NONE) {
@@ -1149,12 +1520,284 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                 pos += peekedNumberLength;
             }
             peeked = PEEKED_NONE;
+            if (markPos >= 0) {
+                skipCount = count;
+                mark();
+            }
         } while (count != 0);
 
+        skipCount = 0;
         pathIndices[stackSize - 1]++;
         pathNames[stackSize - 1] = "null";
     }
 
+    /**
+     * Skips the rest of the {@code depth} innermost arrays or objects,
+     * including their closing brackets. Like {@link #skipValue()} it can be
+     * finished by {@link #resumeSkip()} after running out of input.
+     */
+    @Override
+    public void skipRemaining(int depth) throws IOException {
+        if (peeked == PEEKED_NONE && !lenient && markPos < 0) {
+            skipStructure(depth);
+            stackSize -= depth;
+            pathIndices[stackSize - 1]++;
+            pathNames[stackSize - 1] = "null";
+            return;
+        }
+        skipCount = depth;
+        if (markPos >= 0) {
+            // resume from here, not from before the token that led to this
+            mark();
+        }
+        skipValue();
+    }
+
+    /**
+     * Skips up to {@code count} elements of the current array by scanning for
+     * the commas between them, stopping early at its end. Skips nothing while
+     * lenient, and while marked, where {@link #skipValue()} does the work.
+     *
+     * @return the number of elements skipped
+     */
+    @Override
+    public int skipElements(int count) throws IOException {
+        if (count <= 0 || peeked != PEEKED_NONE || lenient || markPos >= 0) {
+            return 0;
+        }
+        int skipped;
+        int top = stack[stackSize - 1];
+        if (top == JsonScope.EMPTY_ARRAY) {
+            int c = nextNonWhitespace(true);
+            pos--;
+            if (c == ']') {
+                return 0;
+            }
+            stack[stackSize - 1] = JsonScope.NONEMPTY_ARRAY;
+            skipped = skipToComma(count) + 1;
+        } else if (top == JsonScope.NONEMPTY_ARRAY) {
+            // the comma before the next element is the first one
+            skipped = skipToComma(count + 1);
+        } else {
+            throw new IllegalStateException("Not in an array" + locationString());
+        }
+        pathIndices[stackSize - 1] += skipped;
+        return skipped;
+    }
+
+    /**
+     * Skips whatever is left of the current top-level value, so that the next
+     * token read is the next top-level value or the end of the input.
+     */
+    public void skipToDocumentEnd() throws IOException {
+        if (stackSize > 1 && peeked == PEEKED_NONE && !lenient && markPos < 0) {
+            skipStructure(stackSize - 1);
+            stackSize = 1;
+            pathIndices[0]++;
+            return;
+        }
+        while (stackSize > 1) {
+            int p = peeked;
+            if (p == PEEKED_NONE) {
+                p = doPeek();
+            }
+            if (p == PEEKED_END_ARRAY || p == PEEKED_END_OBJECT) {
+                peeked = PEEKED_NONE;
+                stackSize--;
+                pathIndices[stackSize - 1]++;
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    /**
+     * Skips ahead until {@code depth} more arrays or objects have been closed,
+     * looking at nothing but brackets, strings and newlines. Meant for strict
+     * mode, where brackets can only hide in strings: unlike the token by token
+     * path the skipped text is not validated beyond that.
+     */
+    private void skipStructure(int depth) throws IOException {
+        // Like nextNonWhitespace, this uses locals to save inner-loop field access.
+        byte[] skipClass = SKIP_CLASS;
+        boolean inString = false;
+        while (true) {
+            char[] buffer = this.buffer;
+            int p = pos;
+            int l = limit;
+            int lines = 0;
+            int lastNewline = lineStart;
+            scan:
+            while (p < l) {
+                char c;
+                int k;
+                if (!inString) {
+                    c = buffer[p++];
+                    k = c < 128 ? skipClass[c] : 0;
+                    if (k == 0) {
+                        continue;
+                    }
+                    if (k == SKIP_OPEN) {
+                        depth++;
+                        continue;
+                    } else if (k == SKIP_CLOSE) {
+                        if (--depth == 0) {
+                            skipped(p, lines, lastNewline);
+                            return;
+                        }
+                        continue;
+                    } else if (k == SKIP_NEWLINE) {
+                        lines++;
+                        lastNewline = p;
+                        continue;
+                    } else if (k != SKIP_QUOTE) {
+                        continue;
+                    }
+                    inString = true;
+                }
+                while (true) {
+                    if (p >= l) {
+                        break scan;
+                    }
+                    c = buffer[p++];
+                    k = c < 128 ? skipClass[c] : 0;
+                    if (k == SKIP_QUOTE) {
+                        inString = false;
+                        break;
+                    } else if (k == SKIP_BACKSLASH) {
+                        if (p == l) {
+                            // keep the escape together with the character it escapes
+                            p--;
+                            break scan;
+                        }
+                        p++;
+                    } else if (k == SKIP_NEWLINE) {
+                        lines++;
+                        lastNewline = p;
+                    }
+                }
+            }
+            skipped(p, lines, lastNewline);
+            if (!fillBuffer(limit - pos + 1)) {
+                if (inString) {
+                    throw syntaxError("Unterminated string");
+                }
+                throw new EOFException("End of input" + locationString());
+            }
+        }
+    }
+
+    /**
+     * Skips ahead to the {@code n}-th comma between the elements of the
+     * current array, or to its closing bracket if that comes first, leaving
+     * either unconsumed. Looks at the input like {@link #skipStructure(int)}.
+     *
+     * @return the number of commas passed
+     */
+    private int skipToComma(int n) throws IOException {
+        // Like nextNonWhitespace, this uses locals to save inner-loop field access.
+        byte[] skipClass = SKIP_CLASS;
+        boolean inString = false;
+        int depth = 0;
+        int passed = 0;
+        while (true) {
+            char[] buffer = this.buffer;
+            int p = pos;
+            int l = limit;
+            int lines = 0;
+            int lastNewline = lineStart;
+            scan:
+            while (p < l) {
+                char c;
+                int k;
+                if (!inString) {
+                    c = buffer[p++];
+                    k = c < 128 ? skipClass[c] : 0;
+                    if (k == 0) {
+                        continue;
+                    }
+                    if (k == SKIP_COMMA) {
+                        if (depth == 0) {
+                            if (passed + 1 == n) {
+                                skipped(p - 1, lines, lastNewline);
+                                return passed;
+                            }
+                            passed++;
+                        }
+                        continue;
+                    } else if (k == SKIP_OPEN) {
+                        depth++;
+                        continue;
+                    } else if (k == SKIP_CLOSE) {
+                        if (depth-- == 0) {
+                            skipped(p - 1, lines, lastNewline);
+                            return passed;
+                        }
+                        continue;
+                    } else if (k == SKIP_NEWLINE) {
+                        lines++;
+                        lastNewline = p;
+                        continue;
+                    } else if (k != SKIP_QUOTE) {
+                        continue;
+                    }
+                    inString = true;
+                }
+                while (true) {
+                    if (p >= l) {
+                        break scan;
+                    }
+                    c = buffer[p++];
+                    k = c < 128 ? skipClass[c] : 0;
+                    if (k == SKIP_QUOTE) {
+                        inString = false;
+                        break;
+                    } else if (k == SKIP_BACKSLASH) {
+                        if (p == l) {
+                            // keep the escape together with the character it escapes
+                            p--;
+                            break scan;
+                        }
+                        p++;
+                    } else if (k == SKIP_NEWLINE) {
+                        lines++;
+                        lastNewline = p;
+                    }
+                }
+            }
+            skipped(p, lines, lastNewline);
+            if (!fillBuffer(limit - pos + 1)) {
+                if (inString) {
+                    throw syntaxError("Unterminated string");
+                }
+                throw new EOFException("End of input" + locationString());
+            }
+        }
+    }
+
+    private void skipped(int p, int lines, int lastNewline) {
+        pos = p;
+        lineNumber += lines;
+        lineStart = lastNewline;
+    }
+
+    /**
+     * Consumes whitespace and record separators before a top-level value.
+     *
+     * @return false at the end of the input
+     */
+    private boolean nextDocument() throws IOException {
+        int c;
+        do {
+            c = nextNonWhitespace(false);
+        } while (c == RECORD_SEPARATOR);
+        if (c == -1) {
+            return false;
+        }
+        pos--;
+        return true;
+    }
+
     private void push(int newTop) {
         if (stackSize == stack.length) {
             int[] newStack = new int[stackSize * 2];
@@ -1181,27 +1824,42 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         }
 
         char[] buffer = this.buffer;
-        lineStart -= pos;
-        if (limit != pos) {
-            limit -= pos;
-            System.arraycopy(buffer, pos, buffer, 0, limit);
+        int keep = markPos >= 0 ? markPos : pos;
+        lineStart -= keep;
+        if (limit != keep) {
+            limit -= keep;
+            System.arraycopy(buffer, keep, buffer, 0, limit);
         } else {
             limit = 0;
         }
 
-        pos = 0;
+        pos -= keep;
+        if (markPos >= 0) {
+            markPos = 0;
+            markLineStart -= keep;
+            if (limit == buffer.length || pos + minimum > buffer.length) {
+                buffer = this.buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + minimum));
+            }
+        }
+
         int total;
         while ((total = in.read(buffer, limit, buffer.length - limit)) != -1) {
+            if (total == 0) {
+                throw new IOException("No progress reading " + (buffer.length - limit) + " chars");
+            }
             limit += total;
 
             // if this is the first read, consume an optional byte order mark (BOM) if it exists
             if (lineNumber == 0 && lineStart == 0 && limit > 0 && buffer[0] == '\ufeff') {
                 pos++;
                 lineStart++;
-                minimum++;
+                if (markPos == 0) {
+                    markPos = pos;
+                    markLineStart = lineStart;
+                }
             }
 
-            if (limit >= minimum) {
+            if (limit - pos >= minimum) {
                 return true;
             }
         }
@@ -1232,6 +1890,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                 if (!fillBuffer(1)) {
                     break;
                 }
+                buffer = this.buffer;
                 p = pos;
                 l = limit;
             }
@@ -1254,6 +1913,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                     if (!charsLoaded) {
                         return c;
                     }
+                    buffer = this.buffer;
                 }
 
                 checkLenient();
@@ -1265,6 +1925,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                         if (!skipTo("*/")) {
                             throw syntaxError("Unterminated comment");
                         }
+                        buffer = this.buffer;
                         p = pos + 2;
                         l = limit;
                         continue;
@@ -1273,6 +1934,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                         // skip a // end-of-line comment
                         pos++;
                         skipToEndOfLine();
+                        buffer = this.buffer;
                         p = pos;
                         l = limit;
                         continue;
@@ -1289,6 +1951,7 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
                  */
                 checkLenient();
                 skipToEndOfLine();
+                buffer = this.buffer;
                 p = pos;
                 l = limit;
             } else {
@@ -1476,11 +2139,11 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         nextNonWhitespace(true);
         pos--;
 
-        if (pos + NON_EXECUTE_PREFIX.length > limit && !fillBuffer(NON_EXECUTE_PREFIX.length)) {
-            return;
-        }
-
         for (int i = 0; i < NON_EXECUTE_PREFIX.length; i++) {
+            // read no further than the first mismatch, like the keywords
+            if (pos + i >= limit && !fillBuffer(i + 1)) {
+                return;
+            }
             if (buffer[pos + i] != NON_EXECUTE_PREFIX[i]) {
                 return; // not a security token!
             }
@@ -1490,4 +2153,24 @@ public abstract class ReusableJsonReader implements CustomJsonReader {
         pos += NON_EXECUTE_PREFIX.length;
     }
 
+    private static final class ReaderCharSource implements CharSource {
+
+        private final Reader reader;
+
+        ReaderCharSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes an {@link InputStream} or a blocking {@link ReadableByteChannel}
+ * through a reusable byte buffer. Bytes are pulled from the input only when the
+ * reader asks for more chars, so a reader that stops early leaves the rest of
+ * the input unread; {@link #getBytesConsumed()} tells how much was taken.
+ */
+public class StreamCharSource implements CharSource {
+
+    private final DecodingCharSource decoder;
+    private final ByteBuffer bytes;
+
+    private InputStream stream;
+    private ReadableByteChannel channel;
+    private boolean eof;
+    private long bytesConsumed;
+
+    public StreamCharSource(Charset charset, int bufferSize) {
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException("bufferSize < 4");
+        }
+        this.decoder = new DecodingCharSource(charset);
+        this.bytes = ByteBuffer.allocate(bufferSize);
+    }
+
+    public void reset(InputStream stream) {
+        this.stream = stream;
+        this.channel = null;
+        start();
+    }
+
+    public void reset(ReadableByteChannel channel) {
+        this.stream = null;
+        this.channel = channel;
+        start();
+    }
+
+    private void start() {
+        bytes.clear();
+        bytes.flip();
+        eof = false;
+        bytesConsumed = 0;
+        decoder.reset(bytes, false);
+    }
+
+    /**
+     * Returns the number of bytes read from the current input so far. The
+     * input is read a buffer at a time, so this may be ahead of the position
+     * the parser stopped at by up to the buffer size.
+     */
+    public long getBytesConsumed() {
+        return bytesConsumed;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            int n = decoder.read(buffer, offset, length);
+            if (n > 0 || eof) {
+                return n;
+            }
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        ByteBuffer bytes = this.bytes;
+        bytes.compact(); // keeps an incomplete trailing character, if any
+        int r;
+        if (stream != null) {
+            r = stream.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            if (r > 0) {
+                bytes.position(bytes.position() + r);
+            }
+        } else if (channel != null) {
+            r = channel.read(bytes);
+        } else {
+            r = -1;
+        }
+        bytes.flip();
+        if (r < 0) {
+            eof = true;
+            decoder.append(bytes, true);
+        } else {
+            bytesConsumed += r;
+            decoder.append(bytes, false);
+        }
+    }
+
+    /**
+     * Closes the underlying stream or channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (stream != null) {
+                stream.close();
+            } else if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            stream = null;
+            channel = null;
+        }
+    }
+
+}
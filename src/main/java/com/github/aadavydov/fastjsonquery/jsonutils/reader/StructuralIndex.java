@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import java.util.Arrays;
+
+/**
+ * First stage of a two-stage read of UTF-8 JSON: one pass over the bytes that
+ * pairs every array and object with its closing bracket. A
+ * {@link Utf8JsonReader} set up with the index then skips a value in one jump
+ * instead of scanning it, so a document scanned once can be evaluated by many
+ * predicates for little more than the parts each of them looks at.
+ * <p>
+ * Only brackets outside strings are indexed. Separators and quotes are left
+ * to the tokenizer, which still reads every value it does not skip. An index
+ * may be rebuilt for other input; its arrays are kept and grown.
+ */
+public final class StructuralIndex {
+
+    private static final byte QUOTE = 1;
+    private static final byte OPEN = 2;
+    private static final byte CLOSE = 3;
+    private static final byte NEWLINE = 4;
+    private static final byte BACKSLASH = 5;
+    private static final byte NON_ASCII = 6;
+    private static final byte[] CLASS = new byte[256];
+
+    static {
+        CLASS['"'] = QUOTE;
+        CLASS['{'] = OPEN;
+        CLASS['['] = OPEN;
+        CLASS['}'] = CLOSE;
+        CLASS[']'] = CLOSE;
+        CLASS['\n'] = NEWLINE;
+        CLASS['\\'] = BACKSLASH;
+        for (int c = 0x80; c < 0x100; c++) {
+            CLASS[c] = NON_ASCII;
+        }
+    }
+
+    private byte[] data;
+    private int offset;
+    private int length;
+
+    /* Per container, in order of the opening brackets. */
+    private int[] opens = new int[64];
+    private int[] closes = new int[64];
+    /* Number of newlines inside the container and position after the last one. */
+    private int[] lines = new int[64];
+    private int[] lastNewlines = new int[64];
+    private int count;
+
+    private int[] open = new int[32];
+
+    /**
+     * Indexes {@code data}.
+     */
+    public StructuralIndex build(byte[] data) {
+        return build(data, 0, data.length);
+    }
+
+    /**
+     * Indexes {@code length} bytes of {@code data} starting at {@code offset}.
+     * Containers left open by malformed input are not indexed; the reader scans
+     * them as usual and reports the error. Indexing stops at the first malformed
+     * UTF-8 sequence for the same reason.
+     */
+    public StructuralIndex build(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+
+        byte[] cls = CLASS;
+        int[] open = this.open;
+        int depth = 0;
+        int count = 0;
+        int newlines = 0;
+        int lastNewline = -1;
+
+        int p = offset;
+        int l = offset + length;
+        scan:
+        while (p < l) {
+            int k = cls[data[p++] & 0xff];
+            if (k == 0) {
+                continue;
+            }
+            if (k == QUOTE) {
+                while (p < l) {
+                    k = cls[data[p++] & 0xff];
+                    if (k == QUOTE) {
+                        break;
+                    } else if (k == BACKSLASH) {
+                        if (p < l && data[p] >= 0) {
+                            p++;
+                        }
+                    } else if (k == NEWLINE) {
+                        newlines++;
+                        lastNewline = p;
+                    } else if (k == NON_ASCII) {
+                        p = Utf8JsonReader.sequenceEnd(data, p - 1, l);
+                        if (p < 0) {
+                            break scan;
+                        }
+                    }
+                }
+            } else if (k == OPEN) {
+                if (count == opens.length) {
+                    grow();
+                }
+                if (depth == open.length) {
+                    open = this.open = Arrays.copyOf(open, depth * 2);
+                }
+                opens[count] = p - 1;
+                closes[count] = -1;
+                // the newline count so far, until the container is closed
+                lines[count] = newlines;
+                open[depth++] = count++;
+            } else if (k == CLOSE) {
+                if (depth == 0) {
+                    break;
+                }
+                int i = open[--depth];
+                closes[i] = p - 1;
+                lines[i] = newlines - lines[i];
+                lastNewlines[i] = lines[i] == 0 ? -1 : lastNewline;
+            } else if (k == NEWLINE) {
+                newlines++;
+                lastNewline = p;
+            } else if (k == NON_ASCII) {
+                p = Utf8JsonReader.sequenceEnd(data, p - 1, l);
+                if (p < 0) {
+                    break;
+                }
+            }
+        }
+        this.count = count;
+        return this;
+    }
+
+    private void grow() {
+        int n = opens.length * 2;
+        opens = Arrays.copyOf(opens, n);
+        closes = Arrays.copyOf(closes, n);
+        lines = Arrays.copyOf(lines, n);
+        lastNewlines = Arrays.copyOf(lastNewlines, n);
+    }
+
+    /**
+     * Returns true if this index was built over the given bytes.
+     */
+    public boolean covers(byte[] data, int offset, int length) {
+        return this.data == data && this.offset == offset && this.length == length;
+    }
+
+    /**
+     * Returns the number of indexed containers.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the container opened by the bracket at {@code position}, or -1 if
+     * there is none with a known end.
+     */
+    int find(int position) {
+        int i = Arrays.binarySearch(opens, 0, count, position);
+        return i >= 0 && closes[i] >= 0 ? i : -1;
+    }
+
+    int closeOf(int container) {
+        return closes[container];
+    }
+
+    int linesIn(int container) {
+        return lines[container];
+    }
+
+    int lastNewlineIn(int container) {
+        return lastNewlines[container];
+    }
+
+}
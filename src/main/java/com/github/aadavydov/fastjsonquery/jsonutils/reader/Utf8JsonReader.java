@@ -0,0 +1,1945 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.jsonutils.reader;
+
+import com.github.aadavydov.fastjsonquery.jsonutils.CustomJsonReader;
+import com.github.aadavydov.fastjsonquery.jsonutils.NameTable;
+import com.github.aadavydov.fastjsonquery.jsonutils.NumberSink;
+import com.github.aadavydov.fastjsonquery.jsonutils.StringSink;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizes UTF-8 encoded JSON directly from a byte array. Uses the same state
+ * machine as {@link ReusableJsonReader}, but never decodes the whole input into
+ * chars: skipped values and structural tokens are handled on raw bytes and only
+ * names and strings that are actually consumed are decoded into {@link String}s.
+ * <p>
+ * Every byte the reader passes over, consumed or skipped, must be well-formed
+ * UTF-8, otherwise a {@link MalformedInputException} is thrown as a decoding
+ * reader would. Containers jumped over with a {@link StructuralIndex} were
+ * checked when it was built.
+ */
+public class Utf8JsonReader implements CustomJsonReader {
+
+    /**
+     * The only non-execute prefix this parser permits
+     */
+    private static final byte[] NON_EXECUTE_PREFIX = ")]}'\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long MIN_INCOMPLETE_INTEGER = Long.MIN_VALUE / 10;
+    /**
+     * Precedes every text of an RFC 7464 JSON text sequence
+     */
+    private static final int RECORD_SEPARATOR = 0x1E;
+
+    /*
+     * Classes of the characters skipStructure() stops at; all others are 0.
+     */
+    private static final byte SKIP_QUOTE = 1;
+    private static final byte SKIP_OPEN = 2;
+    private static final byte SKIP_CLOSE = 3;
+    private static final byte SKIP_NEWLINE = 4;
+    private static final byte SKIP_BACKSLASH = 5;
+    private static final byte SKIP_COMMA = 6;
+    private static final byte SKIP_NON_ASCII = 7;
+    private static final byte[] SKIP_CLASS = new byte[256];
+
+    static {
+        SKIP_CLASS['"'] = SKIP_QUOTE;
+        SKIP_CLASS['{'] = SKIP_OPEN;
+        SKIP_CLASS['['] = SKIP_OPEN;
+        SKIP_CLASS['}'] = SKIP_CLOSE;
+        SKIP_CLASS[']'] = SKIP_CLOSE;
+        SKIP_CLASS['\n'] = SKIP_NEWLINE;
+        SKIP_CLASS['\\'] = SKIP_BACKSLASH;
+        SKIP_CLASS[','] = SKIP_COMMA;
+        for (int c = 0x80; c < 0x100; c++) {
+            SKIP_CLASS[c] = SKIP_NON_ASCII;
+        }
+    }
+
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_BEGIN_OBJECT = 1;
+    private static final int PEEKED_END_OBJECT = 2;
+    private static final int PEEKED_BEGIN_ARRAY = 3;
+    private static final int PEEKED_END_ARRAY = 4;
+    private static final int PEEKED_TRUE = 5;
+    private static final int PEEKED_FALSE = 6;
+    private static final int PEEKED_NULL = 7;
+    private static final int PEEKED_SINGLE_QUOTED = 8;
+    private static final int PEEKED_DOUBLE_QUOTED = 9;
+    private static final int PEEKED_UNQUOTED = 10;
+    /**
+     * When this is returned, the string value is stored in peekedString.
+     */
+    private static final int PEEKED_BUFFERED = 11;
+    private static final int PEEKED_SINGLE_QUOTED_NAME = 12;
+    private static final int PEEKED_DOUBLE_QUOTED_NAME = 13;
+    private static final int PEEKED_UNQUOTED_NAME = 14;
+    /**
+     * When this is returned, the integer value is stored in peekedLong.
+     */
+    private static final int PEEKED_LONG = 15;
+    private static final int PEEKED_NUMBER = 16;
+    private static final int PEEKED_EOF = 17;
+
+    /* State machine when parsing numbers */
+    private static final int NUMBER_CHAR_NONE = 0;
+    private static final int NUMBER_CHAR_SIGN = 1;
+    private static final int NUMBER_CHAR_DIGIT = 2;
+    private static final int NUMBER_CHAR_DECIMAL = 3;
+    private static final int NUMBER_CHAR_FRACTION_DIGIT = 4;
+    private static final int NUMBER_CHAR_EXP_E = 5;
+    private static final int NUMBER_CHAR_EXP_SIGN = 6;
+    private static final int NUMBER_CHAR_EXP_DIGIT = 7;
+    int peeked = PEEKED_NONE;
+    /**
+     * True to accept non-spec compliant JSON
+     */
+    private boolean lenient = false;
+    /**
+     * True to read a sequence of top-level values, see {@link #setDocumentSequence(boolean)}
+     */
+    private boolean documentSequence = false;
+    /**
+     * The input JSON. Unlike {@link ReusableJsonReader} the whole document is
+     * available up front, so there is no refill step.
+     */
+    private byte[] buffer;
+    /**
+     * Brackets of the input paired up in advance, or null.
+     */
+    private StructuralIndex index = null;
+    private int pos = 0;
+    private int limit = 0;
+    private int lineNumber = 0;
+    private int lineStart = 0;
+    /**
+     * A peeked value that was composed entirely of digits with an optional
+     * leading dash. Positive values may not have a leading 0.
+     */
+    private long peekedLong;
+
+    /**
+     * The number of bytes in a peeked number literal. Increment 'pos' by
+     * this after reading a number.
+     */
+    private int peekedNumberLength;
+
+    /**
+     * The chars of a number literal handed to a {@link NumberSink}.
+     */
+    private char[] numberChars = new char[32];
+
+    /**
+     * A peeked string that should be parsed on the next double, long or string.
+     * This is populated before a numeric value is parsed and used if that
+     * parsing fails.
+     */
+    private String peekedString;
+
+    /*
+     * The nesting stack. Using a manual array rather than an ArrayList saves 20%.
+     */
+    private int[] stack = new int[32];
+    private int stackSize = 0;
+    /*
+     * The path members. It corresponds directly to stack: At indices where the
+     * stack contains an object (EMPTY_OBJECT, DANGLING_NAME or NONEMPTY_OBJECT),
+     * pathNames contains the name at this scope. Where it contains an array
+     * (EMPTY_ARRAY, NONEMPTY_ARRAY) pathIndices contains the current index in
+     * that array. Otherwise the value is undefined, and we take advantage of that
+     * by incrementing pathIndices when doing so isn't useful.
+     */
+    private String[] pathNames = new String[32];
+    private int[] pathIndices = new int[32];
+
+    {
+        stack[stackSize++] = JsonScope.EMPTY_DOCUMENT;
+    }
+
+    public void setup(byte[] data) {
+        setup(data, 0, data.length);
+    }
+
+    /**
+     * Prepares this reader to read {@code length} bytes of {@code data} starting
+     * at {@code offset}. The array is not copied and must not be modified until
+     * the reader is done with it.
+     */
+    public void setup(byte[] data, int offset, int length) {
+        setup(data, offset, length, null);
+    }
+
+    /**
+     * Same as {@link #setup(byte[], int, int)}, with {@code index} built over
+     * the same bytes. In strict mode, arrays and objects are then skipped by
+     * jumping to their closing bracket.
+     */
+    public void setup(byte[] data, int offset, int length, StructuralIndex index) {
+        if (data == null) {
+            throw new NullPointerException("in == null");
+        }
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + data.length);
+        }
+        if (index != null && !index.covers(data, offset, length)) {
+            throw new IllegalArgumentException("index was built over other input");
+        }
+        this.buffer = data;
+        this.index = index;
+
+        this.pos = offset;
+        this.limit = offset + length;
+
+        // consume an optional byte order mark (BOM) if it exists
+        if (limit - pos >= 3 && data[pos] == (byte) 0xEF && data[pos + 1] == (byte) 0xBB && data[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+
+        lineNumber = 0;
+        lineStart = pos;
+
+        peeked = PEEKED_NONE;
+        peekedLong = 0;
+        peekedNumberLength = 0;
+
+        peekedString = null;
+        stackSize = 0;
+        stack[stackSize++] = JsonScope.EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns true if this parser is liberal in what it accepts.
+     */
+    public final boolean isLenient() {
+        return lenient;
+    }
+
+    /**
+     * Configure this parser to be liberal in what it accepts. See
+     * {@link ReusableJsonReader#setLenient(boolean)} for the list of accepted
+     * syntax errors.
+     */
+    public final void setLenient(boolean lenient) {
+        this.lenient = lenient;
+    }
+
+    public final boolean isDocumentSequence() {
+        return documentSequence;
+    }
+
+    /**
+     * Configure this parser to read any number of top-level values, concatenated
+     * or separated by whitespace or by RFC 7464 record separators ({@code 0x1E}),
+     * without being lenient. The end of the input is then reported as
+     * {@link JsonToken#END_DOCUMENT} before the first value as well as between
+     * values. Use {@link #skipToDocumentEnd()} to leave a value unfinished.
+     */
+    public final void setDocumentSequence(boolean documentSequence) {
+        this.documentSequence = documentSequence;
+    }
+
+    /**
+     * Consumes the next token from the JSON stream and asserts that it is the
+     * beginning of a new array.
+     */
+    public void beginArray() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_BEGIN_ARRAY) {
+            push(JsonScope.EMPTY_ARRAY);
+            pathIndices[stackSize - 1] = 0;
+            peeked = PEEKED_NONE;
+        } else {
+            throw new IllegalStateException("Expected BEGIN_ARRAY but was " + peek() + locationString());
+        }
+    }
+
+    /**
+     * Consumes the next token from the JSON stream and asserts that it is the
+     * end of the current array.
+     */
+    public void endArray() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_END_ARRAY) {
+            stackSize--;
+            pathIndices[stackSize - 1]++;
+            peeked = PEEKED_NONE;
+        } else {
+            throw new IllegalStateException("Expected END_ARRAY but was " + peek() + locationString());
+        }
+    }
+
+    /**
+     * Consumes the next token from the JSON stream and asserts that it is the
+     * beginning of a new object.
+     */
+    public void beginObject() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_BEGIN_OBJECT) {
+            push(JsonScope.EMPTY_OBJECT);
+            peeked = PEEKED_NONE;
+        } else {
+            throw new IllegalStateException("Expected BEGIN_OBJECT but was " + peek() + locationString());
+        }
+    }
+
+    /**
+     * Consumes the next token from the JSON stream and asserts that it is the
+     * end of the current object.
+     */
+    public void endObject() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_END_OBJECT) {
+            stackSize--;
+            pathNames[stackSize] = null; // Free the last path name so that it can be garbage collected!
+            pathIndices[stackSize - 1]++;
+            peeked = PEEKED_NONE;
+        } else {
+            throw new IllegalStateException("Expected END_OBJECT but was " + peek() + locationString());
+        }
+    }
+
+    /**
+     * Returns true if the current array or object has another element.
+     */
+    public boolean hasNext() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     */
+    public JsonToken peek() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+
+        switch (p) {
+            case PEEKED_BEGIN_OBJECT:
+                return JsonToken.BEGIN_OBJECT;
+            case PEEKED_END_OBJECT:
+                return JsonToken.END_OBJECT;
+            case PEEKED_BEGIN_ARRAY:
+                return JsonToken.BEGIN_ARRAY;
+            case PEEKED_END_ARRAY:
+                return JsonToken.END_ARRAY;
+            case PEEKED_SINGLE_QUOTED_NAME:
+            case PEEKED_DOUBLE_QUOTED_NAME:
+            case PEEKED_UNQUOTED_NAME:
+                return JsonToken.NAME;
+            case PEEKED_TRUE:
+            case PEEKED_FALSE:
+                return JsonToken.BOOLEAN;
+            case PEEKED_NULL:
+                return JsonToken.NULL;
+            case PEEKED_SINGLE_QUOTED:
+            case PEEKED_DOUBLE_QUOTED:
+            case PEEKED_UNQUOTED:
+            case PEEKED_BUFFERED:
+                return JsonToken.STRING;
+            case PEEKED_LONG:
+            case PEEKED_NUMBER:
+                return JsonToken.NUMBER;
+            case PEEKED_EOF:
+                return JsonToken.END_DOCUMENT;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    int doPeek() throws IOException {
+        int peekStack = stack[stackSize - 1];
+        if (peekStack == JsonScope.EMPTY_ARRAY) {
+            stack[stackSize - 1] = JsonScope.NONEMPTY_ARRAY;
+        } else if (peekStack == JsonScope.NONEMPTY_ARRAY) {
+            // Look for a comma before the next element.
+            int c = nextNonWhitespace(true);
+            switch (c) {
+                case ']':
+                    return peeked = PEEKED_END_ARRAY;
+                case ';':
+                    checkLenient(); // fall-through
+                case ',':
+                    break;
+                default:
+                    throw syntaxError("Unterminated array");
+            }
+        } else if (peekStack == JsonScope.EMPTY_OBJECT || peekStack == JsonScope.NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = JsonScope.DANGLING_NAME;
+            // Look for a comma before the next element.
+            if (peekStack == JsonScope.NONEMPTY_OBJECT) {
+                int c = nextNonWhitespace(true);
+                switch (c) {
+                    case '}':
+                        return peeked = PEEKED_END_OBJECT;
+                    case ';':
+                        checkLenient(); // fall-through
+                    case ',':
+                        break;
+                    default:
+                        throw syntaxError("Unterminated object");
+                }
+            }
+            int c = nextNonWhitespace(true);
+            switch (c) {
+                case '"':
+                    return peeked = PEEKED_DOUBLE_QUOTED_NAME;
+                case '\'':
+                    checkLenient();
+                    return peeked = PEEKED_SINGLE_QUOTED_NAME;
+                case '}':
+                    if (peekStack != JsonScope.NONEMPTY_OBJECT) {
+                        return peeked = PEEKED_END_OBJECT;
+                    } else {
+                        throw syntaxError("Expected name");
+                    }
+                default:
+                    checkLenient();
+                    pos--; // Don't consume the first character in an unquoted string.
+                    if (isLiteral(c)) {
+                        return peeked = PEEKED_UNQUOTED_NAME;
+                    } else {
+                        throw syntaxError("Expected name");
+                    }
+            }
+        } else if (peekStack == JsonScope.DANGLING_NAME) {
+            stack[stackSize - 1] = JsonScope.NONEMPTY_OBJECT;
+            // Look for a colon before the value.
+            int c = nextNonWhitespace(true);
+            switch (c) {
+                case ':':
+                    break;
+                case '=':
+                    checkLenient();
+                    if (pos < limit && buffer[pos] == '>') {
+                        pos++;
+                    }
+                    break;
+                default:
+                    throw syntaxError("Expected ':'");
+            }
+        } else if (peekStack == JsonScope.EMPTY_DOCUMENT) {
+            if (lenient) {
+                consumeNonExecutePrefix();
+            }
+            stack[stackSize - 1] = JsonScope.NONEMPTY_DOCUMENT;
+            if (documentSequence && !nextDocument()) {
+                return peeked = PEEKED_EOF;
+            }
+        } else if (peekStack == JsonScope.NONEMPTY_DOCUMENT) {
+            if (documentSequence) {
+                if (!nextDocument()) {
+                    return peeked = PEEKED_EOF;
+                }
+            } else {
+                int c = nextNonWhitespace(false);
+                if (c == -1) {
+                    return peeked = PEEKED_EOF;
+                } else {
+                    checkLenient();
+                    pos--;
+                }
+            }
+        } else if (peekStack == JsonScope.CLOSED) {
+            throw new IllegalStateException("JsonReader is closed");
+        }
+
+        int c = nextNonWhitespace(true);
+        switch (c) {
+            case ']':
+                if (peekStack == JsonScope.EMPTY_ARRAY) {
+                    return peeked = PEEKED_END_ARRAY;
+                }
+                // fall-through to handle ",]"
+            case ';':
+            case ',':
+                // In lenient mode, a 0-length literal in an array means 'null'.
+                if (peekStack == JsonScope.EMPTY_ARRAY || peekStack == JsonScope.NONEMPTY_ARRAY) {
+                    checkLenient();
+                    pos--;
+                    return peeked = PEEKED_NULL;
+                } else {
+                    throw syntaxError("Unexpected value");
+                }
+            case '\'':
+                checkLenient();
+                return peeked = PEEKED_SINGLE_QUOTED;
+            case '"':
+                return peeked = PEEKED_DOUBLE_QUOTED;
+            case '[':
+                return peeked = PEEKED_BEGIN_ARRAY;
+            case '{':
+                return peeked = PEEKED_BEGIN_OBJECT;
+            default:
+                pos--; // Don't consume the first character in a literal value.
+        }
+
+        int result = peekKeyword();
+        if (result != PEEKED_NONE) {
+            return result;
+        }
+
+        result = peekNumber();
+        if (result != PEEKED_NONE) {
+            return result;
+        }
+
+        if (!isLiteral(buffer[pos])) {
+            throw syntaxError("Expected value");
+        }
+
+        checkLenient();
+        return peeked = PEEKED_UNQUOTED;
+    }
+
+    private int peekKeyword() throws IOException {
+        // Figure out which keyword we're matching against by its first character.
+        byte c = buffer[pos];
+        String keyword;
+        String keywordUpper;
+        int peeking;
+        if (c == 't' || c == 'T') {
+            keyword = "true";
+            keywordUpper = "TRUE";
+            peeking = PEEKED_TRUE;
+        } else if (c == 'f' || c == 'F') {
+            keyword = "false";
+            keywordUpper = "FALSE";
+            peeking = PEEKED_FALSE;
+        } else if (c == 'n' || c == 'N') {
+            keyword = "null";
+            keywordUpper = "NULL";
+            peeking = PEEKED_NULL;
+        } else {
+            return PEEKED_NONE;
+        }
+
+        // Confirm that chars [1..length) match the keyword.
+        int length = keyword.length();
+        for (int i = 1; i < length; i++) {
+            if (pos + i >= limit) {
+                return PEEKED_NONE;
+            }
+            c = buffer[pos + i];
+            if (c != keyword.charAt(i) && c != keywordUpper.charAt(i)) {
+                if (c < 0) {
+                    checkSequence(pos + i);
+                }
+                return PEEKED_NONE;
+            }
+        }
+
+        if (pos + length < limit) {
+            c = buffer[pos + length];
+            if (c < 0) {
+                checkSequence(pos + length);
+            }
+            if (isLiteral(c)) {
+                return PEEKED_NONE; // Don't match trues, falsey or nullsoft!
+            }
+        }
+
+        // We've found the keyword followed either by EOF or by a non-literal character.
+        pos += length;
+        return peeked = peeking;
+    }
+
+    private int peekNumber() throws IOException {
+        // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
+        byte[] buffer = this.buffer;
+        int p = pos;
+        int l = limit;
+
+        long value = 0; // Negative to accommodate Long.MIN_VALUE more easily.
+        boolean negative = false;
+        boolean fitsInLong = true;
+        int last = NUMBER_CHAR_NONE;
+
+        int i = 0;
+
+        charactersOfNumber:
+        for (; p + i < l; i++) {
+            int c = buffer[p + i];
+            switch (c) {
+                case '-':
+                    if (last == NUMBER_CHAR_NONE) {
+                        negative = true;
+                        last = NUMBER_CHAR_SIGN;
+                        continue;
+                    } else if (last == NUMBER_CHAR_EXP_E) {
+                        last = NUMBER_CHAR_EXP_SIGN;
+                        continue;
+                    }
+                    return PEEKED_NONE;
+
+                case '+':
+                    if (last == NUMBER_CHAR_EXP_E) {
+                        last = NUMBER_CHAR_EXP_SIGN;
+                        continue;
+                    }
+                    return PEEKED_NONE;
+
+                case 'e':
+                case 'E':
+                    if (last == NUMBER_CHAR_DIGIT || last == NUMBER_CHAR_FRACTION_DIGIT) {
+                        last = NUMBER_CHAR_EXP_E;
+                        continue;
+                    }
+                    return PEEKED_NONE;
+
+                case '.':
+                    if (last == NUMBER_CHAR_DIGIT) {
+                        last = NUMBER_CHAR_DECIMAL;
+                        continue;
+                    }
+                    return PEEKED_NONE;
+
+                default:
+                    if (c < '0' || c > '9') {
+                        if (c < 0) {
+                            checkSequence(p + i);
+                        }
+                        if (!isLiteral(c)) {
+                            break charactersOfNumber;
+                        }
+                        return PEEKED_NONE;
+                    }
+                    if (last == NUMBER_CHAR_SIGN || last == NUMBER_CHAR_NONE) {
+                        value = -(c - '0');
+                        last = NUMBER_CHAR_DIGIT;
+                    } else if (last == NUMBER_CHAR_DIGIT) {
+                        if (value == 0) {
+                            return PEEKED_NONE; // Leading '0' prefix is not allowed (since it could be octal).
+                        }
+                        long newValue = value * 10 - (c - '0');
+                        fitsInLong &= value > MIN_INCOMPLETE_INTEGER
+                                || (value == MIN_INCOMPLETE_INTEGER && newValue < value);
+                        value = newValue;
+                    } else if (last == NUMBER_CHAR_DECIMAL) {
+                        last = NUMBER_CHAR_FRACTION_DIGIT;
+                    } else if (last == NUMBER_CHAR_EXP_E || last == NUMBER_CHAR_EXP_SIGN) {
+                        last = NUMBER_CHAR_EXP_DIGIT;
+                    }
+            }
+        }
+
+        // We've read a complete number. Decide if it's a PEEKED_LONG or a PEEKED_NUMBER.
+        if (last == NUMBER_CHAR_DIGIT && fitsInLong && (value != Long.MIN_VALUE || negative) && (value != 0 || false == negative)) {
+            peekedLong = negative ? value : -value;
+            pos += i;
+            return peeked = PEEKED_LONG;
+        } else if (last == NUMBER_CHAR_DIGIT || last == NUMBER_CHAR_FRACTION_DIGIT
+                || last == NUMBER_CHAR_EXP_DIGIT) {
+            peekedNumberLength = i;
+            return peeked = PEEKED_NUMBER;
+        } else {
+            return PEEKED_NONE;
+        }
+    }
+
+    private boolean isLiteral(int c) throws IOException {
+        switch (c) {
+            case '/':
+            case '\\':
+            case ';':
+            case '#':
+            case '=':
+                checkLenient(); // fall-through
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case ':':
+            case ',':
+            case ' ':
+            case '\t':
+            case '\f':
+            case '\r':
+            case '\n':
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns the next token, a
+     * {@link com.google.gson.stream.JsonToken#NAME property name}, and consumes
+     * it.
+     *
+     * @throws java.io.IOException if the next token in the stream is not a
+     *                             property name.
+     */
+    public String nextName() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        String result;
+        if (p == PEEKED_UNQUOTED_NAME) {
+            result = nextUnquotedValue();
+        } else if (p == PEEKED_SINGLE_QUOTED_NAME) {
+            result = nextQuotedValue('\'');
+        } else if (p == PEEKED_DOUBLE_QUOTED_NAME) {
+            result = nextQuotedValue('"');
+        } else {
+            throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+        }
+        peeked = PEEKED_NONE;
+        pathNames[stackSize - 1] = result;
+        return result;
+    }
+
+    /**
+     * Consumes the next name like {@link #nextName()}, but matches an ASCII
+     * quoted name in place against {@code names}. A string is only created for
+     * names with escapes or non-ASCII characters.
+     */
+    @Override
+    public int nextNameSlot(NameTable names) throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        int slot;
+        if (p == PEEKED_UNQUOTED_NAME) {
+            slot = names.find(nextUnquotedValue());
+        } else if (p == PEEKED_SINGLE_QUOTED_NAME) {
+            slot = findQuotedName(names, '\'');
+        } else if (p == PEEKED_DOUBLE_QUOTED_NAME) {
+            slot = findQuotedName(names, '"');
+        } else {
+            throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+        }
+        peeked = PEEKED_NONE;
+        pathNames[stackSize - 1] = slot < 0 ? null : names.name(slot);
+        return slot;
+    }
+
+    private int findQuotedName(NameTable names, char quote) throws IOException {
+        byte[] buffer = this.buffer;
+        int start = pos;
+        int l = limit;
+        int h = 0;
+        for (int p = start; p < l; p++) {
+            int c = buffer[p];
+            if (c == quote) {
+                pos = p + 1;
+                return names.find(buffer, start, p - start, h);
+            } else if (c < 0 || c == '\\' || c == '\n') {
+                break;
+            }
+            h = 31 * h + c;
+        }
+        return names.find(nextQuotedValue(quote));
+    }
+
+    /**
+     * Returns the {@link com.google.gson.stream.JsonToken#STRING string} value
+     * of the next token, consuming it. If the next token is a number, this
+     * method will return its string form.
+     *
+     * @throws IllegalStateException if the next token is not a string or if
+     *                               this reader is closed.
+     */
+    public String nextString() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        String result;
+        if (p == PEEKED_UNQUOTED) {
+            result = nextUnquotedValue();
+        } else if (p == PEEKED_SINGLE_QUOTED) {
+            result = nextQuotedValue('\'');
+        } else if (p == PEEKED_DOUBLE_QUOTED) {
+            result = nextQuotedValue('"');
+        } else if (p == PEEKED_BUFFERED) {
+            result = peekedString;
+            peekedString = null;
+        } else if (p == PEEKED_LONG) {
+            result = Long.toString(peekedLong);
+        } else if (p == PEEKED_NUMBER) {
+            result = new String(buffer, pos, peekedNumberLength, StandardCharsets.US_ASCII);
+            pos += peekedNumberLength;
+        } else {
+            throw new IllegalStateException("Expected a string but was " + peek() + locationString());
+        }
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        return result;
+    }
+
+    @Override
+    public void nextString(StringSink sink) throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        char quote;
+        if (p == PEEKED_DOUBLE_QUOTED) {
+            quote = '"';
+        } else if (p == PEEKED_SINGLE_QUOTED) {
+            quote = '\'';
+        } else {
+            String string = nextString();
+            sink.string(string.toCharArray(), 0, string.length());
+            return;
+        }
+        byte[] buffer = this.buffer;
+        int start = pos;
+        int l = limit;
+        for (int i = start; i < l; i++) {
+            byte c = buffer[i];
+            if (c == quote) {
+                pos = i + 1;
+                peeked = PEEKED_NONE;
+                pathIndices[stackSize - 1]++;
+                sink.string(buffer, start, i - start);
+                return;
+            } else if (c == '\\' || c == '\n') {
+                break;
+            } else if (c < 0) {
+                i = checkSequence(i) - 1;
+            }
+        }
+        String string = nextString();
+        sink.string(string.toCharArray(), 0, string.length());
+    }
+
+    @Override
+    public void nextNumber(NumberSink sink) throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_LONG) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            sink.number(peekedLong);
+        } else if (p == PEEKED_NUMBER) {
+            int length = peekedNumberLength;
+            if (numberChars.length < length) {
+                numberChars = new char[Math.max(length, 2 * numberChars.length)];
+            }
+            // the literal is ASCII
+            for (int i = 0; i < length; i++) {
+                numberChars[i] = (char) buffer[pos + i];
+            }
+            pos += length;
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            sink.number(numberChars, 0, length);
+        } else {
+            String number = nextString();
+            sink.number(number.toCharArray(), 0, number.length());
+        }
+    }
+
+    /**
+     * Returns the {@link com.google.gson.stream.JsonToken#BOOLEAN boolean}
+     * value of the next token, consuming it.
+     *
+     * @throws IllegalStateException if the next token is not a boolean or if
+     *                               this reader is closed.
+     */
+    public boolean nextBoolean() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_TRUE) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            return true;
+        } else if (p == PEEKED_FALSE) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            return false;
+        }
+        throw new IllegalStateException("Expected a boolean but was " + peek() + locationString());
+    }
+
+    /**
+     * Consumes the next token from the JSON stream and asserts that it is a
+     * literal null.
+     *
+     * @throws IllegalStateException if the next token is not null or if this
+     *                               reader is closed.
+     */
+    public void nextNull() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+        if (p == PEEKED_NULL) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+        } else {
+            throw new IllegalStateException("Expected null but was " + peek() + locationString());
+        }
+    }
+
+    /**
+     * Returns the {@link com.google.gson.stream.JsonToken#NUMBER double} value
+     * of the next token, consuming it. If the next token is a string, this
+     * method will attempt to parse it as a double using
+     * {@link Double#parseDouble(String)}.
+     *
+     * @throws IllegalStateException if the next token is not a literal value.
+     * @throws NumberFormatException if the next literal value cannot be parsed
+     *                               as a double, or is non-finite.
+     */
+    public double nextDouble() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+
+        if (p == PEEKED_LONG) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            return (double) peekedLong;
+        }
+
+        if (p == PEEKED_NUMBER) {
+            peekedString = new String(buffer, pos, peekedNumberLength, StandardCharsets.US_ASCII);
+            pos += peekedNumberLength;
+        } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED) {
+            peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
+        } else if (p == PEEKED_UNQUOTED) {
+            peekedString = nextUnquotedValue();
+        } else if (p != PEEKED_BUFFERED) {
+            throw new IllegalStateException("Expected a double but was " + peek() + locationString());
+        }
+
+        peeked = PEEKED_BUFFERED;
+        double result = Double.parseDouble(peekedString); // don't catch this NumberFormatException.
+        if (!lenient && (Double.isNaN(result) || Double.isInfinite(result))) {
+            throw new MalformedJsonException(
+                    "JSON forbids NaN and infinities: " + result + locationString());
+        }
+        peekedString = null;
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        return result;
+    }
+
+    /**
+     * Returns the {@link com.google.gson.stream.JsonToken#NUMBER long} value of
+     * the next token, consuming it. If the next token is a string, this method
+     * will attempt to parse it as a long. If the next token's numeric value
+     * cannot be exactly represented by a Java {@code long}, this method throws.
+     *
+     * @throws IllegalStateException if the next token is not a literal value.
+     * @throws NumberFormatException if the next literal value cannot be parsed
+     *                               as a number, or exactly represented as a long.
+     */
+    public long nextLong() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+
+        if (p == PEEKED_LONG) {
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            return peekedLong;
+        }
+
+        if (p == PEEKED_NUMBER) {
+            peekedString = new String(buffer, pos, peekedNumberLength, StandardCharsets.US_ASCII);
+            pos += peekedNumberLength;
+        } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED || p == PEEKED_UNQUOTED) {
+            if (p == PEEKED_UNQUOTED) {
+                peekedString = nextUnquotedValue();
+            } else {
+                peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
+            }
+            try {
+                long result = Long.parseLong(peekedString);
+                peeked = PEEKED_NONE;
+                pathIndices[stackSize - 1]++;
+                return result;
+            } catch (NumberFormatException ignored) {
+                // Fall back to parse as a double below.
+            }
+        } else {
+            throw new IllegalStateException("Expected a long but was " + peek() + locationString());
+        }
+
+        peeked = PEEKED_BUFFERED;
+        double asDouble = Double.parseDouble(peekedString); // don't catch this NumberFormatException.
+        long result = (long) asDouble;
+        if (result != asDouble) { // Make sure no precision was lost casting to 'long'.
+            throw new NumberFormatException("Expected a long but was " + peekedString + locationString());
+        }
+        peekedString = null;
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        return result;
+    }
+
+    /**
+     * Returns the string up to but not including {@code quote}, unescaping any
+     * character escape sequences encountered along the way. The opening quote
+     * should have already been read. This consumes the closing quote, but does
+     * not include it in the returned string.
+     * <p>
+     * Bytes of a multi-byte UTF-8 sequence are always negative, so they can never
+     * be mistaken for a quote or a backslash and the scan may run on raw bytes;
+     * each sequence is checked as it is passed.
+     *
+     * @param quote either ' or ".
+     * @throws NumberFormatException if any unicode escape sequences are
+     *                               malformed.
+     */
+    private String nextQuotedValue(char quote) throws IOException {
+        // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
+        byte[] buffer = this.buffer;
+        StringBuilder builder = null;
+        int p = pos;
+        int l = limit;
+        /* the index of the first byte not yet appended to the builder. */
+        int start = p;
+        while (p < l) {
+            int c = buffer[p++];
+
+            if (c == quote) {
+                pos = p;
+                int len = p - start - 1;
+                if (builder == null) {
+                    return new String(buffer, start, len, StandardCharsets.UTF_8);
+                } else {
+                    appendUtf8(builder, start, len);
+                    return builder.toString();
+                }
+            } else if (c == '\\') {
+                pos = p;
+                int len = p - start - 1;
+                if (builder == null) {
+                    int estimatedLength = (len + 1) * 2;
+                    builder = new StringBuilder(Math.max(estimatedLength, 16));
+                }
+                appendUtf8(builder, start, len);
+                builder.append(readEscapeCharacter());
+                p = pos;
+                start = p;
+            } else if (c == '\n') {
+                lineNumber++;
+                lineStart = p;
+            } else if (c < 0) {
+                p = checkSequence(p - 1);
+            }
+        }
+
+        pos = p;
+        throw syntaxError("Unterminated string");
+    }
+
+    private void appendUtf8(StringBuilder builder, int start, int len) {
+        byte[] buffer = this.buffer;
+        int end = start + len;
+        int i = start;
+        // Plain ASCII is widened in place, anything else goes through the JDK decoder.
+        while (i < end && buffer[i] >= 0) {
+            builder.append((char) buffer[i++]);
+        }
+        if (i < end) {
+            builder.append(new String(buffer, i, end - i, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns an unquoted value as a string.
+     */
+    @SuppressWarnings("fallthrough")
+    private String nextUnquotedValue() throws IOException {
+        int i = 0;
+
+        findNonLiteralCharacter:
+        for (; pos + i < limit; i++) {
+            byte c = buffer[pos + i];
+            switch (c) {
+                case '/':
+                case '\\':
+                case ';':
+                case '#':
+                case '=':
+                    checkLenient(); // fall-through
+                case '{':
+                case '}':
+                case '[':
+                case ']':
+                case ':':
+                case ',':
+                case ' ':
+                case '\t':
+                case '\f':
+                case '\r':
+                case '\n':
+                    break findNonLiteralCharacter;
+                default:
+                    if (c < 0) {
+                        i = checkSequence(pos + i) - pos - 1;
+                    }
+            }
+        }
+
+        String result = new String(buffer, pos, i, StandardCharsets.UTF_8);
+        pos += i;
+        return result;
+    }
+
+    private void skipQuotedValue(char quote) throws IOException {
+        // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
+        byte[] buffer = this.buffer;
+        int p = pos;
+        int l = limit;
+        while (p < l) {
+            int c = buffer[p++];
+            if (c == quote) {
+                pos = p;
+                return;
+            } else if (c == '\\') {
+                pos = p;
+                readEscapeCharacter();
+                p = pos;
+            } else if (c == '\n') {
+                lineNumber++;
+                lineStart = p;
+            } else if (c < 0) {
+                p = checkSequence(p - 1);
+            }
+        }
+        pos = p;
+        throw syntaxError("Unterminated string");
+    }
+
+    @SuppressWarnings("fallthrough")
+    private void skipUnquotedValue() throws IOException {
+        int i = 0;
+        for (; pos + i < limit; i++) {
+            byte c = buffer[pos + i];
+            switch (c) {
+                case '/':
+                case '\\':
+                case ';':
+                case '#':
+                case '=':
+                    checkLenient(); // fall-through
+                case '{':
+                case '}':
+                case '[':
+                case ']':
+                case ':':
+                case ',':
+                case ' ':
+                case '\t':
+                case '\f':
+                case '\r':
+                case '\n':
+                    pos += i;
+                    return;
+                default:
+                    if (c < 0) {
+                        i = checkSequence(pos + i) - pos - 1;
+                    }
+            }
+        }
+        pos += i;
+    }
+
+    /**
+     * Returns the {@link com.google.gson.stream.JsonToken#NUMBER int} value of
+     * the next token, consuming it. If the next token is a string, this method
+     * will attempt to parse it as an int. If the next token's numeric value
+     * cannot be exactly represented by a Java {@code int}, this method throws.
+     *
+     * @throws IllegalStateException if the next token is not a literal value.
+     * @throws NumberFormatException if the next literal value cannot be parsed
+     *                               as a number, or exactly represented as an int.
+     */
+    public int nextInt() throws IOException {
+        int p = peeked;
+        if (p == PEEKED_NONE) {
+            p = doPeek();
+        }
+
+        int result;
+        if (p == PEEKED_LONG) {
+            result = (int) peekedLong;
+            if (peekedLong != result) { // Make sure no precision was lost casting to 'int'.
+                throw new NumberFormatException("Expected an int but was " + peekedLong + locationString());
+            }
+            peeked = PEEKED_NONE;
+            pathIndices[stackSize - 1]++;
+            return result;
+        }
+
+        if (p == PEEKED_NUMBER) {
+            peekedString = new String(buffer, pos, peekedNumberLength, StandardCharsets.US_ASCII);
+            pos += peekedNumberLength;
+        } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED || p == PEEKED_UNQUOTED) {
+            if (p == PEEKED_UNQUOTED) {
+                peekedString = nextUnquotedValue();
+            } else {
+                peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
+            }
+            try {
+                result = Integer.parseInt(peekedString);
+                peeked = PEEKED_NONE;
+                pathIndices[stackSize - 1]++;
+                return result;
+            } catch (NumberFormatException ignored) {
+                // Fall back to parse as a double below.
+            }
+        } else {
+            throw new IllegalStateException("Expected an int but was " + peek() + locationString());
+        }
+
+        peeked = PEEKED_BUFFERED;
+        double asDouble = Double.parseDouble(peekedString); // don't catch this NumberFormatException.
+        result = (int) asDouble;
+        if (result != asDouble) { // Make sure no precision was lost casting to 'int'.
+            throw new NumberFormatException("Expected an int but was " + peekedString + locationString());
+        }
+        peekedString = null;
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        return result;
+    }
+
+    /**
+     * Closes this JSON reader and releases the input array.
+     */
+    public void close() throws IOException {
+        peeked = PEEKED_NONE;
+        stack[0] = JsonScope.CLOSED;
+        stackSize = 1;
+        buffer = null;
+    }
+
+    /**
+     * Skips the next value recursively. If it is an object or array, all nested
+     * elements are skipped. This method is intended for use when the JSON token
+     * stream contains unrecognized or unhandled values.
+     */
+    public void skipValue() throws IOException {
+        if (!lenient) {
+            int p = peeked;
+            if (p == PEEKED_NONE) {
+                p = doPeek();
+            }
+            if (p == PEEKED_BEGIN_ARRAY || p == PEEKED_BEGIN_OBJECT) {
+                peeked = PEEKED_NONE;
+                if (index == null || !skipIndexed()) {
+                    skipStructure(1);
+                }
+                pathIndices[stackSize - 1]++;
+                pathNames[stackSize - 1] = "null";
+                return;
+            }
+        }
+        int count = 0;
+        do {
+            int p = peeked;
+            if (p == PEEKED_NONE) {
+                p = doPeek();
+            }
+
+            if (p == PEEKED_BEGIN_ARRAY) {
+                push(JsonScope.EMPTY_ARRAY);
+                count++;
+            } else if (p == PEEKED_BEGIN_OBJECT) {
+                push(JsonScope.EMPTY_OBJECT);
+                count++;
+            } else if (p == PEEKED_END_ARRAY) {
+                stackSize--;
+                count--;
+            } else if (p == PEEKED_END_OBJECT) {
+                stackSize--;
+                count--;
+            } else if (p == PEEKED_UNQUOTED_NAME || p == PEEKED_UNQUOTED) {
+                skipUnquotedValue();
+            } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_SINGLE_QUOTED_NAME) {
+                skipQuotedValue('\'');
+            } else if (p == PEEKED_DOUBLE_QUOTED || p == PEEKED_DOUBLE_QUOTED_NAME) {
+                skipQuotedValue('"');
+            } else if (p == PEEKED_NUMBER) {
+                pos += peekedNumberLength;
+            }
+            peeked = PEEKED_NONE;
+        } while (count != 0);
+
+        pathIndices[stackSize - 1]++;
+        pathNames[stackSize - 1] = "null";
+    }
+
+    /**
+     * Skips the rest of the {@code depth} innermost arrays or objects,
+     * including their closing brackets.
+     */
+    @Override
+    public void skipRemaining(int depth) throws IOException {
+        if (peeked != PEEKED_NONE || lenient) {
+            CustomJsonReader.super.skipRemaining(depth);
+            return;
+        }
+        skipStructure(depth);
+        stackSize -= depth;
+        pathIndices[stackSize - 1]++;
+        pathNames[stackSize - 1] = "null";
+    }
+
+    /**
+     * Skips up to {@code count} elements of the current array by scanning for
+     * the commas between them, stopping early at its end. Skips nothing while
+     * lenient.
+     *
+     * @return the number of elements skipped
+     */
+    @Override
+    public int skipElements(int count) throws IOException {
+        if (count <= 0 || peeked != PEEKED_NONE || lenient) {
+            return 0;
+        }
+        int skipped;
+        int top = stack[stackSize - 1];
+        if (top == JsonScope.EMPTY_ARRAY) {
+            int c = nextNonWhitespace(true);
+            pos--;
+            if (c == ']') {
+                return 0;
+            }
+            stack[stackSize - 1] = JsonScope.NONEMPTY_ARRAY;
+            skipped = skipToComma(count) + 1;
+        } else if (top == JsonScope.NONEMPTY_ARRAY) {
+            // the comma before the next element is the first one
+            skipped = skipToComma(count + 1);
+        } else {
+            throw new IllegalStateException("Not in an array" + locationString());
+        }
+        pathIndices[stackSize - 1] += skipped;
+        return skipped;
+    }
+
+    /**
+     * Skips whatever is left of the current top-level value, so that the next
+     * token read is the next top-level value or the end of the input.
+     */
+    public void skipToDocumentEnd() throws IOException {
+        if (stackSize > 1 && peeked == PEEKED_NONE && !lenient) {
+            skipStructure(stackSize - 1);
+            stackSize = 1;
+            pathIndices[0]++;
+            return;
+        }
+        while (stackSize > 1) {
+            int p = peeked;
+            if (p == PEEKED_NONE) {
+                p = doPeek();
+            }
+            if (p == PEEKED_END_ARRAY || p == PEEKED_END_OBJECT) {
+                peeked = PEEKED_NONE;
+                stackSize--;
+                pathIndices[stackSize - 1]++;
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    /**
+     * Skips ahead until {@code depth} more arrays or objects have been closed,
+     * looking at nothing but brackets, strings and newlines. Meant for strict
+     * mode, where brackets can only hide in strings: unlike the token by token
+     * path the skipped text is not validated beyond that and its encoding.
+     */
+    private void skipStructure(int depth) throws IOException {
+        // Like nextNonWhitespace, this uses locals to save inner-loop field access.
+        byte[] buffer = this.buffer;
+        byte[] skipClass = SKIP_CLASS;
+        int p = pos;
+        int l = limit;
+        int lines = 0;
+        int lastNewline = lineStart;
+        while (p < l) {
+            int k = skipClass[buffer[p++] & 0xff];
+            if (k == 0) {
+                continue;
+            }
+            if (k == SKIP_QUOTE) {
+                while (true) {
+                    if (p >= l) {
+                        skipped(l, lines, lastNewline);
+                        throw syntaxError("Unterminated string");
+                    }
+                    k = skipClass[buffer[p++] & 0xff];
+                    if (k == SKIP_QUOTE) {
+                        break;
+                    } else if (k == SKIP_BACKSLASH) {
+                        // an escaped non-ASCII character is left to be checked
+                        if (p < l && buffer[p] >= 0) {
+                            p++;
+                        }
+                    } else if (k == SKIP_NEWLINE) {
+                        lines++;
+                        lastNewline = p;
+                    } else if (k == SKIP_NON_ASCII) {
+                        p = checkSequence(p - 1);
+                    }
+                }
+            } else if (k == SKIP_OPEN) {
+                depth++;
+            } else if (k == SKIP_CLOSE) {
+                if (--depth == 0) {
+                    skipped(p, lines, lastNewline);
+                    return;
+                }
+            } else if (k == SKIP_NEWLINE) {
+                lines++;
+                lastNewline = p;
+            } else if (k == SKIP_NON_ASCII) {
+                p = checkSequence(p - 1);
+            }
+        }
+        skipped(l, lines, lastNewline);
+        throw new EOFException("End of input" + locationString());
+    }
+
+    /**
+     * Jumps past the container whose opening bracket was just consumed.
+     *
+     * @return false if the index does not know where it ends
+     */
+    private boolean skipIndexed() {
+        int i = index.find(pos - 1);
+        if (i < 0) {
+            return false;
+        }
+        int lines = index.linesIn(i);
+        if (lines > 0) {
+            lineNumber += lines;
+            lineStart = index.lastNewlineIn(i);
+        }
+        pos = index.closeOf(i) + 1;
+        return true;
+    }
+
+    /**
+     * Skips ahead to the {@code n}-th comma between the elements of the
+     * current array, or to its closing bracket if that comes first, leaving
+     * either unconsumed. Looks at the input like {@link #skipStructure(int)},
+     * and jumps over nested containers the structural index knows.
+     *
+     * @return the number of commas passed
+     */
+    private int skipToComma(int n) throws IOException {
+        // Like nextNonWhitespace, this uses locals to save inner-loop field access.
+        byte[] buffer = this.buffer;
+        byte[] skipClass = SKIP_CLASS;
+        StructuralIndex index = this.index;
+        int p = pos;
+        int l = limit;
+        int lines = 0;
+        int lastNewline = lineStart;
+        int depth = 0;
+        int passed = 0;
+        while (p < l) {
+            int k = skipClass[buffer[p++] & 0xff];
+            if (k == 0) {
+                continue;
+            }
+            if (k == SKIP_COMMA) {
+                if (depth == 0) {
+                    if (passed + 1 == n) {
+                        skipped(p - 1, lines, lastNewline);
+                        return passed;
+                    }
+                    passed++;
+                }
+            } else if (k == SKIP_QUOTE) {
+                while (true) {
+                    if (p >= l) {
+                        skipped(l, lines, lastNewline);
+                        throw syntaxError("Unterminated string");
+                    }
+                    k = skipClass[buffer[p++] & 0xff];
+                    if (k == SKIP_QUOTE) {
+                        break;
+                    } else if (k == SKIP_BACKSLASH) {
+                        // an escaped non-ASCII character is left to be checked
+                        if (p < l && buffer[p] >= 0) {
+                            p++;
+                        }
+                    } else if (k == SKIP_NEWLINE) {
+                        lines++;
+                        lastNewline = p;
+                    } else if (k == SKIP_NON_ASCII) {
+                        p = checkSequence(p - 1);
+                    }
+                }
+            } else if (k == SKIP_OPEN) {
+                int i = depth == 0 && index != null ? index.find(p - 1) : -1;
+                if (i < 0) {
+                    depth++;
+                } else {
+                    if (index.linesIn(i) > 0) {
+                        lines += index.linesIn(i);
+                        lastNewline = index.lastNewlineIn(i);
+                    }
+                    p = index.closeOf(i) + 1;
+                }
+            } else if (k == SKIP_CLOSE) {
+                if (depth-- == 0) {
+                    skipped(p - 1, lines, lastNewline);
+                    return passed;
+                }
+            } else if (k == SKIP_NEWLINE) {
+                lines++;
+                lastNewline = p;
+            } else if (k == SKIP_NON_ASCII) {
+                p = checkSequence(p - 1);
+            }
+        }
+        skipped(l, lines, lastNewline);
+        throw new EOFException("End of input" + locationString());
+    }
+
+    private void skipped(int p, int lines, int lastNewline) {
+        pos = p;
+        lineNumber += lines;
+        lineStart = lastNewline;
+    }
+
+    /**
+     * Checks the multi-byte sequences from {@code p} up to the next ASCII byte.
+     *
+     * @return the position of that byte or the limit
+     * @throws MalformedInputException if they are not well-formed UTF-8
+     */
+    private int checkSequence(int p) throws IOException {
+        byte[] buffer = this.buffer;
+        int l = limit;
+        while (p < l) {
+            int c = buffer[p];
+            if (c >= 0) {
+                return p;
+            }
+            // two-byte sequences are the common case: a lead in C2..DF and a byte in 80..BF
+            if (c >= (byte) 0xC2 && c < (byte) 0xE0 && p + 1 < l && buffer[p + 1] < (byte) 0xC0) {
+                p += 2;
+            } else {
+                p = sequenceEnd(buffer, p, l);
+                if (p < 0) {
+                    throw new MalformedInputException(1);
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Returns the position after the UTF-8 sequence led by the byte at
+     * {@code p}, or -1 if the sequence is malformed or cut off by {@code limit}.
+     * Overlong forms, surrogates and code points past U+10FFFF are malformed,
+     * as they are to the JDK decoder.
+     */
+    static int sequenceEnd(byte[] data, int p, int limit) {
+        int lead = data[p] & 0xff;
+        // the second byte has a narrower range after some leads
+        int min = 0x80;
+        int max = 0xBF;
+        int n;
+        if (lead < 0x80) {
+            return p + 1;
+        } else if (lead < 0xC2) {
+            return -1;
+        } else if (lead < 0xE0) {
+            n = 1;
+        } else if (lead < 0xF0) {
+            n = 2;
+            if (lead == 0xE0) {
+                min = 0xA0;
+            } else if (lead == 0xED) {
+                max = 0x9F;
+            }
+        } else if (lead < 0xF5) {
+            n = 3;
+            if (lead == 0xF0) {
+                min = 0x90;
+            } else if (lead == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return -1;
+        }
+        if (p + n >= limit) {
+            return -1;
+        }
+        int c = data[p + 1] & 0xff;
+        if (c < min || c > max) {
+            return -1;
+        }
+        for (int i = 2; i <= n; i++) {
+            if ((data[p + i] & 0xC0) != 0x80) {
+                return -1;
+            }
+        }
+        return p + n + 1;
+    }
+
+    /**
+     * Consumes whitespace and record separators before a top-level value.
+     *
+     * @return false at the end of the input
+     */
+    private boolean nextDocument() throws IOException {
+        int c;
+        do {
+            c = nextNonWhitespace(false);
+        } while (c == RECORD_SEPARATOR);
+        if (c == -1) {
+            return false;
+        }
+        pos--;
+        return true;
+    }
+
+    private void push(int newTop) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            int[] newPathIndices = new int[stackSize * 2];
+            String[] newPathNames = new String[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            System.arraycopy(pathIndices, 0, newPathIndices, 0, stackSize);
+            System.arraycopy(pathNames, 0, newPathNames, 0, stackSize);
+            stack = newStack;
+            pathIndices = newPathIndices;
+            pathNames = newPathNames;
+        }
+        stack[stackSize++] = newTop;
+    }
+
+    /**
+     * Returns the next character in the stream that is neither whitespace nor a
+     * part of a comment. When this returns, the returned character is always at
+     * {@code buffer[pos-1]}; this means the caller can always push back the
+     * returned character by decrementing {@code pos}.
+     */
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        byte[] buffer = this.buffer;
+        int p = pos;
+        int l = limit;
+        while (p < l) {
+            int c = buffer[p++];
+            if (c == '\n') {
+                lineNumber++;
+                lineStart = p;
+                continue;
+            } else if (c == ' ' || c == '\r' || c == '\t') {
+                continue;
+            }
+
+            if (c == '/') {
+                pos = p;
+                if (p == l) {
+                    return c;
+                }
+
+                checkLenient();
+                byte peek = buffer[pos];
+                switch (peek) {
+                    case '*':
+                        // skip a /* c-style comment */
+                        pos++;
+                        if (!skipTo("*/")) {
+                            throw syntaxError("Unterminated comment");
+                        }
+                        p = pos + 2;
+                        continue;
+
+                    case '/':
+                        // skip a // end-of-line comment
+                        pos++;
+                        skipToEndOfLine();
+                        p = pos;
+                        continue;
+
+                    default:
+                        return c;
+                }
+            } else if (c == '#') {
+                pos = p;
+                /*
+                 * Skip a # hash end-of-line comment. The JSON RFC doesn't
+                 * specify this behaviour, but it's required to parse
+                 * existing documents. See http://b/2571423.
+                 */
+                checkLenient();
+                skipToEndOfLine();
+                p = pos;
+            } else {
+                pos = p;
+                if (c < 0) {
+                    checkSequence(p - 1);
+                }
+                return c;
+            }
+        }
+        pos = p;
+        if (throwOnEof) {
+            throw new EOFException("End of input" + locationString());
+        } else {
+            return -1;
+        }
+    }
+
+    private void checkLenient() throws IOException {
+        if (!lenient) {
+            throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+        }
+    }
+
+    /**
+     * Advances the position until after the next newline character. If the line
+     * is terminated by "\r\n", the '\n' must be consumed as whitespace by the
+     * caller.
+     */
+    private void skipToEndOfLine() throws IOException {
+        while (pos < limit) {
+            byte c = buffer[pos++];
+            if (c == '\n') {
+                lineNumber++;
+                lineStart = pos;
+                break;
+            } else if (c == '\r') {
+                break;
+            } else if (c < 0) {
+                pos = checkSequence(pos - 1);
+            }
+        }
+    }
+
+    /**
+     * @param toFind a string to search for. Must not contain a newline.
+     */
+    private boolean skipTo(String toFind) throws IOException {
+        int length = toFind.length();
+        outer:
+        for (; pos + length <= limit; pos++) {
+            if (buffer[pos] == '\n') {
+                lineNumber++;
+                lineStart = pos + 1;
+                continue;
+            } else if (buffer[pos] < 0) {
+                pos = checkSequence(pos) - 1;
+                continue;
+            }
+            for (int c = 0; c < length; c++) {
+                if (buffer[pos + c] != toFind.charAt(c)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + locationString();
+    }
+
+    String locationString() {
+        int line = lineNumber + 1;
+        int column = pos - lineStart + 1;
+        return " at line " + line + " column " + column + " path " + getPath();
+    }
+
+    /**
+     * Returns a <a href="http://goessner.net/articles/JsonPath/">JsonPath</a>
+     * to the current location in the JSON value.
+     */
+    public String getPath() {
+        StringBuilder result = new StringBuilder().append('$');
+        for (int i = 0, size = stackSize; i < size; i++) {
+            switch (stack[i]) {
+                case JsonScope.EMPTY_ARRAY:
+                case JsonScope.NONEMPTY_ARRAY:
+                    result.append('[').append(pathIndices[i]).append(']');
+                    break;
+
+                case JsonScope.EMPTY_OBJECT:
+                case JsonScope.DANGLING_NAME:
+                case JsonScope.NONEMPTY_OBJECT:
+                    result.append('.');
+                    if (pathNames[i] != null) {
+                        result.append(pathNames[i]);
+                    }
+                    break;
+
+                case JsonScope.NONEMPTY_DOCUMENT:
+                case JsonScope.EMPTY_DOCUMENT:
+                case JsonScope.CLOSED:
+                    break;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Unescapes the character identified by the character or characters that
+     * immediately follow a backslash. The backslash '\' should have already
+     * been read. This supports both unicode escapes "u000A" and two-character
+     * escapes "\n".
+     *
+     * @throws NumberFormatException if any unicode escape sequences are
+     *                               malformed.
+     */
+    private char readEscapeCharacter() throws IOException {
+        if (pos == limit) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+
+        byte escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                if (pos + 4 > limit) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                // Equivalent to Integer.parseInt(stringPool.get(buffer, pos, 4), 16);
+                char result = 0;
+                for (int i = pos, end = i + 4; i < end; i++) {
+                    byte c = buffer[i];
+                    result <<= 4;
+                    if (c >= '0' && c <= '9') {
+                        result += (c - '0');
+                    } else if (c >= 'a' && c <= 'f') {
+                        result += (c - 'a' + 10);
+                    } else if (c >= 'A' && c <= 'F') {
+                        result += (c - 'A' + 10);
+                    } else {
+                        for (int j = i; j < end; j++) {
+                            if (buffer[j] < 0) {
+                                j = checkSequence(j) - 1;
+                            }
+                        }
+                        throw new NumberFormatException("\\u" + new String(buffer, pos, 4, StandardCharsets.UTF_8));
+                    }
+                }
+                pos += 4;
+                return result;
+
+            case 't':
+                return '\t';
+
+            case 'b':
+                return '\b';
+
+            case 'n':
+                return '\n';
+
+            case 'r':
+                return '\r';
+
+            case 'f':
+                return '\f';
+
+            case '\n':
+                lineNumber++;
+                lineStart = pos;
+                // fall-through
+
+            case '\'':
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            default:
+                if (escaped < 0) {
+                    checkSequence(pos - 1);
+                }
+                // throw error when none of the above cases are matched
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Throws a new IO exception with the given message and a context snippet
+     * with this reader's content.
+     */
+    private IOException syntaxError(String message) throws IOException {
+        throw new MalformedJsonException(message + locationString());
+    }
+
+    /**
+     * Consumes the non-execute prefix if it exists.
+     */
+    private void consumeNonExecutePrefix() throws IOException {
+        // fast forward through the leading whitespace
+        nextNonWhitespace(true);
+        pos--;
+
+        if (pos + NON_EXECUTE_PREFIX.length > limit) {
+            return;
+        }
+
+        for (int i = 0; i < NON_EXECUTE_PREFIX.length; i++) {
+            if (buffer[pos + i] != NON_EXECUTE_PREFIX[i]) {
+                return; // not a security token!
+            }
+        }
+
+        // we consumed a security token!
+        pos += NON_EXECUTE_PREFIX.length;
+    }
+
+}
@@ -27,6 +27,7 @@ package com.github.aadavydov.fastjsonquery.parser;
 
 import com.github.aadavydov.fastjsonquery.filter.JsonPredicateComputer;
 import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueOperator;
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueTests;
 import com.github.aadavydov.fastjsonquery.filter.computer.struct.PredicateOperator;
 import com.github.aadavydov.fastjsonquery.filter.predicate.*;
 import com.github.aadavydov.fastjsonquery.filter.value.*;
@@ -56,8 +57,19 @@ public class SimpleExpressionParser {
         return (new SimpleExpressionParser()).parse(inputText);
     }
 
+    /**
+     * @param specialized see {@link JsonPredicateComputer#JsonPredicateComputer(Predicate, boolean)}
+     */
+    public static JsonPredicateComputer parseExpression(String inputText, boolean specialized) throws IOException {
+        return (new SimpleExpressionParser()).parse(inputText, specialized);
+    }
+
     public JsonPredicateComputer parse(String inputText) throws IOException {
-        return new JsonPredicateComputer(buildPredicate(parseToContext(inputText)));
+        return parse(inputText, false);
+    }
+
+    public JsonPredicateComputer parse(String inputText, boolean specialized) throws IOException {
+        return new JsonPredicateComputer(buildPredicate(parseToContext(inputText)), specialized);
     }
 
     private Predicate buildPredicate(QueryParser.FilterContext filter) throws IOException {
@@ -207,11 +219,11 @@ public class SimpleExpressionParser {
             if (right instanceof QueryParser.PathContext) {
                 res = new BinaryPredicate(createOperand((QueryParser.PathContext) left), createOperand((QueryParser.PathContext) right), valueOperator);
             } else {
-                res = new LeftPredicate(createOperand((QueryParser.PathContext) left), createValue(right), valueOperator);
+                res = new LeftPredicate(createOperand((QueryParser.PathContext) left), ValueTests.forConstant(valueOperator, createValue(right)));
             }
         } else {
             if (right instanceof QueryParser.PathContext) {
-                res = new RightPredicate(createValue(left), createOperand((QueryParser.PathContext) right), valueOperator);
+                res = new RightPredicate(createOperand((QueryParser.PathContext) right), ValueTests.forConstant(valueOperator.mirror(), createValue(left)));
             } else {
                 throw new IllegalStateException("Constant expressions not supported yet.");
             }
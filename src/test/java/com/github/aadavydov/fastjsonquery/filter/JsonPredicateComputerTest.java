@@ -28,16 +28,38 @@ package com.github.aadavydov.fastjsonquery.filter;
 import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueOperator;
 import com.github.aadavydov.fastjsonquery.filter.computer.struct.PredicateOperator;
 import com.github.aadavydov.fastjsonquery.filter.predicate.*;
+import com.github.aadavydov.fastjsonquery.filter.value.BooleanValue;
+import com.github.aadavydov.fastjsonquery.filter.value.NullValue;
 import com.github.aadavydov.fastjsonquery.filter.value.NumberValue;
 import com.github.aadavydov.fastjsonquery.filter.value.StringValue;
+import com.github.aadavydov.fastjsonquery.filter.value.Value;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.CharBufferJsonReader;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.MappedCharSource;
 import com.github.aadavydov.fastjsonquery.jsonutils.reader.SingleUseReader;
+import com.github.aadavydov.fastjsonquery.jsonutils.reader.StructuralIndex;
+import com.github.aadavydov.fastjsonquery.parser.SimpleExpressionParser;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 public class JsonPredicateComputerTest {
 
@@ -46,6 +68,10 @@ public class JsonPredicateComputerTest {
     private static final String OBJECT_ARRAY = "[1, {\"a\":1,\"b\":\"b\",\"c\":[1,2,3]}, 3, \"bbbbb\", 5]";
     private static final String LONG_OBJECT_ARRAY1 = "[\"5860887874820\", \"Check.\", \"Some long test string to test how it works with long strings because work with long strings may be differ from work with short strings\", 4, 4.0]";
     private static final String LONG_OBJECT_ARRAY2 = "[\"5860887874820\", \"Check.\", \"Some long test string to test how it works with long strings because work with long strings may be differ from work with short strings\", 4, 7.0]";
+    private static final String UNICODE_OBJECT = "{\"skip\":{\"x\":\"\u65e5\u672c\u8a9e \\\"}\",\"y\":[1,\"\u00e9\"]},\"name\":\"\u041f\u0440\u0438\u0432\u0435\u0442\",\"esc\":\"a\\u00e9\\n\\\"b\",\"n\":12.5}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     static {
         JsonParser p = new JsonParser();
@@ -417,6 +443,1005 @@ public class JsonPredicateComputerTest {
         Assert.assertEquals(false, pc.processJson(new SingleUseReader(new StringReader(OBJECT_ARRAY))));
     }
 
+    @Test
+    public void testUtf8Filter() throws Exception {
+
+        String[] predicates = {
+                "@.name == \"\u041f\u0440\u0438\u0432\u0435\u0442\"",
+                "@.name != \"\u041f\u0440\u0438\u0432\u0435\u0442\"",
+                "@.esc == \"a\u00e9\\n\\\"b\"",
+                "@.skip.y[1] == \"\u00e9\"",
+                "@.skip.x == \"\u65e5\u672c\u8a9e \\\"}\"",
+                "@.n > 12 && @.name",
+                "@.n < 12 || @.missing"
+        };
+        boolean[] expected = {true, false, true, true, true, true, false};
+
+        byte[] bytes = UNICODE_OBJECT.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < predicates.length; i++) {
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicates[i]));
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(bytes, false));
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(UNICODE_OBJECT, false));
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(bytes, true));
+        }
+
+    }
+
+    @Test
+    public void testMalformedInput() throws Exception {
+
+        // documents spelled in ISO-8859-1 so that every char stands for one byte
+        String[][] cases = {
+                {"{\"skip\":{\"x\":\"\u00ff\"},\"k\":1}", "malformed"},
+                {"{\"skip\":[\"a\",\"\u00c3\"],\"k\":1}", "malformed"},
+                {"{\"skip\":[\"\\\u00e9\"],\"k\":1}", "malformed"},
+                {"{\"\u00ff\":1,\"k\":1}", "malformed"},
+                {"{\"skip\":1\u00ff,\"k\":1}", "malformed"},
+                {"{\"skip\":{\"x\":\"\u00c3\u00a9\"},\"k\":1}", "true"},
+                {"{\"k\":2,\"x\":\"\u00ff\"}", "false"}
+        };
+
+        JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.k == 1");
+        StructuralIndex index = new StructuralIndex();
+        for (String[] c : cases) {
+            byte[] bytes = c[0].getBytes(StandardCharsets.ISO_8859_1);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            int half = bytes.length / 2;
+            // every way of passing bytes, the result or the error coming from the same byte
+            String[] outcomes = {
+                    outcome(() -> new JsonFilter(pc).apply(bytes, false)),
+                    outcome(() -> new JsonFilter(pc).apply(bytes, index.build(bytes), false)),
+                    outcome(() -> new JsonFilter(pc, 8).apply(new ByteArrayInputStream(bytes), false)),
+                    outcome(() -> new JsonFilter(pc, 8).apply(direct, false)),
+                    outcome(() -> new JsonFilter(pc, 8).apply(new ByteBuffer[]{
+                            ByteBuffer.wrap(bytes, 0, half), ByteBuffer.wrap(bytes, half, bytes.length - half)}, false)),
+                    outcome(() -> {
+                        FilterSession session = new FilterSession(pc, 8);
+                        for (int i = 0; i < bytes.length && session.getStatus() == FilterSession.Status.NEED_MORE; i++) {
+                            session.feed(ByteBuffer.wrap(bytes, i, 1));
+                        }
+                        return session.finish() == FilterSession.Status.MATCH;
+                    })
+            };
+            for (int i = 0; i < outcomes.length; i++) {
+                Assert.assertEquals(c[0] + ", entry point " + i, c[1], outcomes[i]);
+            }
+        }
+
+    }
+
+    private static String outcome(Callable<Boolean> filter) throws Exception {
+        try {
+            return String.valueOf(filter.call());
+        } catch (MalformedInputException e) {
+            return "malformed";
+        }
+    }
+
+    @Test
+    public void testWindowedDecoding() throws Exception {
+
+        byte[] bytes = UNICODE_OBJECT.getBytes(StandardCharsets.UTF_8);
+
+        for (int window = 8; window <= 64; window++) {
+            CharBufferJsonReader reader = new CharBufferJsonReader(StandardCharsets.UTF_8, window);
+
+            JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.skip.x == \"\u65e5\u672c\u8a9e \\\"}\" && @.n == 12.5");
+            reader.setup(bytes);
+            Assert.assertEquals("window " + window, true, pc.processJson(reader));
+
+            pc = SimpleExpressionParser.parseExpression("@.esc != \"a\u00e9\\n\\\"b\" || @.name == \"\u041f\u0440\u0438\u0432\u0435\u0442\"");
+            reader.setup(bytes);
+            Assert.assertEquals("window " + window, true, pc.processJson(reader));
+        }
+
+    }
+
+    @Test
+    public void testPushSession() throws Exception {
+
+        String[] predicates = {
+                "@.name == \"\u041f\u0440\u0438\u0432\u0435\u0442\"",
+                "@.esc == \"a\u00e9\\n\\\"b\"",
+                "@.skip.y[1] == \"\u00e9\"",
+                "@.skip.x == \"\u65e5\u672c\u8a9e \\\"}\" && @.n == 12.5",
+                "@.n < 12 || @.missing",
+                "@.skip.y[0] == 2"
+        };
+        boolean[] expected = {true, true, true, true, false, false};
+
+        byte[] bytes = UNICODE_OBJECT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = ByteBuffer.allocate(bytes.length);
+
+        for (int i = 0; i < predicates.length; i++) {
+            FilterSession session = new FilterSession(SimpleExpressionParser.parseExpression(predicates[i]), 8);
+            for (int size = 1; size <= bytes.length; size++) {
+                session.reset(false);
+                int fed = 0;
+                FilterSession.Status status = FilterSession.Status.NEED_MORE;
+                while (status == FilterSession.Status.NEED_MORE && fed < bytes.length) {
+                    int len = Math.min(size, bytes.length - fed);
+                    // the same buffer is refilled for every chunk, as an event loop would do
+                    chunk.clear();
+                    chunk.put(bytes, fed, len).flip();
+                    status = session.feed(chunk);
+                    fed += len;
+                }
+                if (status == FilterSession.Status.NEED_MORE) {
+                    status = session.finish();
+                }
+                String message = predicates[i] + ", chunk " + size;
+                Assert.assertEquals(message, expected[i] ? FilterSession.Status.MATCH : FilterSession.Status.NO_MATCH, status);
+                if (i == predicates.length - 1 && size <= 16) {
+                    Assert.assertTrue(message, fed < bytes.length);
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testPushSessionSupplementary() throws Exception {
+
+        String emoji = new String(Character.toChars(0x1F600));
+        for (int window : new int[]{8, 9, CharBufferJsonReader.DEFAULT_WINDOW_SIZE}) {
+            for (int k : new int[]{0, 1, 5, 6, 7, 8, 9, 15, 16, window - 7, window - 6, window - 5, window + 1}) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < k; i++) {
+                    sb.append('x');
+                }
+                String z = sb.append(emoji).append(emoji).toString();
+                byte[] bytes = ("{\"z\":\"" + z + "\", \"k\": 1}").getBytes(StandardCharsets.UTF_8);
+                FilterSession session = new FilterSession(SimpleExpressionParser.parseExpression("@.k == 1 && @.z == \"" + z + "\""), window);
+                for (int size : new int[]{1, 2, 3, 4, 5, 7, 11, bytes.length}) {
+                    session.reset(false);
+                    int fed = 0;
+                    FilterSession.Status status = FilterSession.Status.NEED_MORE;
+                    while (status == FilterSession.Status.NEED_MORE && fed < bytes.length) {
+                        int len = Math.min(size, bytes.length - fed);
+                        status = session.feed(ByteBuffer.wrap(bytes, fed, len));
+                        fed += len;
+                    }
+                    if (status == FilterSession.Status.NEED_MORE) {
+                        status = session.finish();
+                    }
+                    Assert.assertEquals(window + ":" + k + ", chunk " + size, FilterSession.Status.MATCH, status);
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testPushSessionEscapes() throws Exception {
+
+        // unicode escapes cut short by the closing quote or the end of the document
+        String[] documents = {
+                "{\"a\":\"a\\u\"0e9b\"}",
+                "{\"a\":\"\\u00\"}",
+                "{\"a\":\"\\u00e9\\u\"}",
+                "{\"a\":\"\\u12",
+                "{\"a\\u\"0e9\":1,\"a\":\"\\u00e9\"}"
+        };
+
+        JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.a == \"\u00e9\"");
+        for (String document : documents) {
+            byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+            Exception pulled = null;
+            try {
+                new JsonFilter(pc).apply(bytes, false);
+            } catch (Exception e) {
+                pulled = e;
+            }
+            Assert.assertNotNull(document, pulled);
+
+            // one byte at a time, so that the escape is split at every position
+            FilterSession session = new FilterSession(pc, 8);
+            try {
+                for (int i = 0; i < bytes.length && session.getStatus() == FilterSession.Status.NEED_MORE; i++) {
+                    session.feed(ByteBuffer.wrap(bytes, i, 1));
+                }
+                session.finish();
+                Assert.fail(document);
+            } catch (IOException | NumberFormatException e) {
+                Assert.assertEquals(document, pulled.getClass(), e.getClass());
+                Assert.assertEquals(document, pulled.getMessage(), e.getMessage());
+            }
+        }
+
+    }
+
+    @Test
+    public void testNdjsonFilter() throws Exception {
+
+        String ndjson = "{\"a\": 1, \"b\": \"x\"}\n"
+                + "{\"a\": 2, \"b\": \"\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\"}\r\n"
+                + "\n"
+                + "  \n"
+                + "{\"b\": [1, 2, 3], \"a\": 3}\n"
+                + "{\"a\": 0}\n"
+                + "{\"a\": 5}";
+        byte[] bytes = ndjson.getBytes(StandardCharsets.UTF_8);
+        String expected = "{\"a\": 2, \"b\": \"\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\"}\n"
+                + "{\"b\": [1, 2, 3], \"a\": 3}\n"
+                + "{\"a\": 5}\n";
+
+        NdjsonFilter filter = new NdjsonFilter(SimpleExpressionParser.parseExpression("@.a > 1"), 8);
+
+        StringBuilder ranges = new StringBuilder();
+        Assert.assertEquals(3, filter.apply(bytes, false, (data, offset, length) -> {
+            Assert.assertSame(bytes, data);
+            ranges.append(offset).append(':').append(length).append(' ');
+        }));
+        Assert.assertEquals("19:33 58:24 92:8 ", ranges.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(3, filter.apply(new ByteArrayInputStream(bytes), out, false));
+        Assert.assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        out.reset();
+        Assert.assertEquals(3, filter.apply(new ByteArrayInputStream((ndjson + "\n").getBytes(StandardCharsets.UTF_8)), out, false));
+        Assert.assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+    }
+
+    @Test
+    public void testDocumentSequence() throws Exception {
+
+        String sequence = "{\"a\": 1}{\"a\": 2, \"b\": [1, {\"c\": \"}\"}]}\u001e{\"b\": {}, \"a\": 3}\n 4 \u001e\u001e[5]\n";
+        byte[] bytes = sequence.getBytes(StandardCharsets.UTF_8);
+
+        JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.a > 1"), 16);
+        StringBuilder results = new StringBuilder();
+        JsonFilter.DocumentListener listener = (index, match) -> results.append(index).append(match ? "+ " : "- ");
+
+        Assert.assertEquals(2, jf.applySequence(bytes, false, listener));
+        Assert.assertEquals("0- 1+ 2+ 3- 4- ", results.toString());
+
+        results.setLength(0);
+        Assert.assertEquals(2, jf.applySequence(new ByteArrayInputStream(bytes), false, listener));
+        Assert.assertEquals("0- 1+ 2+ 3- 4- ", results.toString());
+
+        results.setLength(0);
+        Assert.assertEquals(0, jf.applySequence(" \u001e ".getBytes(StandardCharsets.UTF_8), false, listener));
+        Assert.assertEquals("", results.toString());
+
+        Assert.assertEquals(true, jf.apply("{\"a\": 2}", false));
+
+    }
+
+    @Test
+    public void testStructuralSkip() throws Exception {
+
+        String json = "{\"skip\": [{\"a\": \"]}\\\\\", \"b\": [[], {}, \"\\\"[{\"]},\n\"\\u005d\", -1.5e3, null], \"c\": 7}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.c == 7");
+        Assert.assertEquals(true, new JsonFilter(pc).apply(bytes, false));
+        for (int window = 8; window <= 32; window++) {
+            Assert.assertEquals("window " + window, true, new JsonFilter(pc, window).apply(json, false));
+        }
+
+        try {
+            new JsonFilter(pc).apply("{\"skip\": [\"]\"", false);
+            Assert.fail();
+        } catch (IOException expected) {
+            // unterminated
+        }
+
+    }
+
+    @Test
+    public void testStructuralSkipMalformed() throws Exception {
+
+        // a skipped array or object is scanned for its end only, strict or not, so the text inside is not validated
+        String json = "{\"skip\": {\"a\": tru, \"b\": [1,, 2], 'c': x y}, \"k\": 1}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.k == 1");
+        Assert.assertEquals(true, new JsonFilter(pc).apply(bytes, false));
+        for (int window = 8; window <= 32; window++) {
+            Assert.assertEquals("window " + window, true, new JsonFilter(pc, window).apply(json, false));
+        }
+
+        // what is read is validated as before
+        pc = SimpleExpressionParser.parseExpression("@.skip.a || @.k == 1");
+        try {
+            new JsonFilter(pc).apply(bytes, false);
+            Assert.fail();
+        } catch (IOException expected) {
+            // tru
+        }
+        try {
+            new JsonFilter(pc).apply(json, false);
+            Assert.fail();
+        } catch (IOException expected) {
+            // tru
+        }
+
+    }
+
+    @Test
+    public void testStructuralIndex() throws Exception {
+
+        String[] predicates = {
+                "@.name == \"\u041f\u0440\u0438\u0432\u0435\u0442\"",
+                "@.skip.y[1] == \"\u00e9\"",
+                "@.n < 12 || @.missing",
+                "@.n == 12.5 && @.esc"
+        };
+        boolean[] expected = {true, true, false, true};
+
+        byte[] bytes = UNICODE_OBJECT.getBytes(StandardCharsets.UTF_8);
+        StructuralIndex index = new StructuralIndex().build(bytes);
+        Assert.assertEquals(3, index.size());
+
+        for (int i = 0; i < predicates.length; i++) {
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicates[i]));
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(bytes, index, false));
+        }
+
+        byte[] nested = "{\"skip\": [{\"a\": \"]}\\\\\"},\n[[\"\\\"[\"]]], \"c\": 7}".getBytes(StandardCharsets.UTF_8);
+        JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.c == 7"));
+        Assert.assertEquals(true, jf.apply(nested, index.build(nested), false));
+        Assert.assertEquals(5, index.size());
+
+        try {
+            jf.apply(bytes, index, false);
+            Assert.fail();
+        } catch (IllegalArgumentException expectedException) {
+            // index of other input
+        }
+
+        byte[] unbalanced = "{\"skip\": [[1, 2], \"c\": 7}".getBytes(StandardCharsets.UTF_8);
+        try {
+            jf.apply(unbalanced, index.build(unbalanced), false);
+            Assert.fail();
+        } catch (IOException expectedException) {
+            // the reader scans the unclosed array and finds the error
+        }
+
+    }
+
+    @Test
+    public void testStreamFilter() throws Exception {
+
+        StringBuilder sb = new StringBuilder("{\"type\":\"x\",\"items\":[");
+        for (int i = 0; i < 10000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"\u00e9l\u00e9ment\"}");
+        }
+        byte[] bytes = sb.append("],\"last\":true}").toString().getBytes(StandardCharsets.UTF_8);
+
+        JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.type == \"x\""), 256);
+
+        Assert.assertEquals(true, jf.apply(new ByteArrayInputStream(bytes), false));
+        Assert.assertEquals(256, jf.getBytesConsumed());
+        Assert.assertEquals(true, jf.apply(Channels.newChannel(new ByteArrayInputStream(bytes)), false));
+        Assert.assertEquals(256, jf.getBytesConsumed());
+
+        jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.last && @.items[9999].name == \"\u00e9l\u00e9ment\""), 256);
+
+        Assert.assertEquals(true, jf.apply(new ByteArrayInputStream(bytes), false));
+        Assert.assertEquals(bytes.length, jf.getBytesConsumed());
+        Assert.assertEquals(true, jf.apply(Channels.newChannel(new ByteArrayInputStream(bytes)), false));
+        Assert.assertEquals(bytes.length, jf.getBytesConsumed());
+
+    }
+
+    @Test
+    public void testSupplementaryAtWindowBoundary() throws Exception {
+
+        // a surrogate pair may meet a window with a single free char, lenient literals keep the whole token buffered
+        String emoji = new String(Character.toChars(0x1F600));
+        for (int window : new int[]{8, 16, 17, CharBufferJsonReader.DEFAULT_WINDOW_SIZE}) {
+            for (int k = Math.max(0, window - 24); k < window + 8; k++) {
+                for (boolean quoted : new boolean[]{true, false}) {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < k; i++) {
+                        sb.append('x');
+                    }
+                    String z = sb.append(emoji).append(emoji).toString();
+                    String quote = quoted ? "\"" : "";
+                    byte[] bytes = ("{\"z\":" + quote + z + quote + ", \"k\": 1}").getBytes(StandardCharsets.UTF_8);
+                    String message = window + ":" + k + ":" + quoted;
+
+                    JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.k == 1 && @.z == \"" + z + "\""), window);
+                    Assert.assertTrue(message, jf.apply(new ByteArrayInputStream(bytes), true));
+                    Assert.assertTrue(message, jf.apply(Channels.newChannel(new ByteArrayInputStream(bytes)), true));
+                    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+                    direct.put(bytes).flip();
+                    Assert.assertTrue(message, jf.apply(direct, true));
+                    ByteBuffer[] parts = {ByteBuffer.wrap(bytes, 0, bytes.length / 2), ByteBuffer.wrap(bytes, bytes.length / 2, bytes.length - bytes.length / 2)};
+                    Assert.assertTrue(message, jf.apply(parts, true));
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+
+        File file = temporaryFolder.newFile("mapped.json");
+        Files.write(file.toPath(), UNICODE_OBJECT.getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.name == \"\u041f\u0440\u0438\u0432\u0435\u0442\" && @.n == 12.5"));
+            Assert.assertEquals(true, jf.applyMapped(channel, false));
+
+            // Segments small enough to split multi-byte characters
+            for (int segment = 4; segment <= 16; segment++) {
+                MappedCharSource source = new MappedCharSource(StandardCharsets.UTF_8, segment);
+                CharBufferJsonReader reader = new CharBufferJsonReader(StandardCharsets.UTF_8, 16);
+                JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.skip.x == \"\u65e5\u672c\u8a9e \\\"}\" && @.name == \"\u041f\u0440\u0438\u0432\u0435\u0442\"");
+                source.reset(channel);
+                reader.setup(source);
+                Assert.assertEquals("segment " + segment, true, pc.processJson(reader));
+            }
+        }
+
+    }
+
+    @Test
+    public void testNameMatching() throws Exception {
+
+        // "Aa" and "BB" share a hash code
+        String json = "{\"A\": 1, \"BB\": 2, \"n\\u0061me\": \"x\", \"\u00e9t\u00e9\": 3, 'Aa': 4, \"Aaa\": 5, \"t\": 6}";
+        String[] predicates = {
+                "@.Aa == 4",
+                "@.BB == 2 && @.A == 1",
+                "@.name == \"x\"",
+                "@.t == 6 && @.\"\u00e9t\u00e9\" == 3",
+                "@.Aaa == 5"
+        };
+
+        for (String predicate : predicates) {
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicate));
+            Assert.assertEquals(predicate, true, jf.apply(json.getBytes(StandardCharsets.UTF_8), true));
+            Assert.assertEquals(predicate, true, jf.apply(json, true));
+        }
+
+    }
+
+    @Test
+    public void testArrayIndexes() throws Exception {
+
+        StringBuilder json = new StringBuilder("{\"a\": [{\"x\": 1, \"y\": [2, 3]}, 5, [6, {\"z\": 7}]], \"long\": [");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i).append(", ");
+        }
+        json.append("\"end\"]}");
+
+        String[] predicates = {
+                "@.a[0].y[1] == 3 && @.a[1] == 5",
+                "@.a[0].x == 1 && @.a[2][1].z == 7",
+                "@.long[999] == 999 && @.long[1000] == \"end\"",
+                "@.a[3] || @.long[1001]"
+        };
+        boolean[] expected = {true, true, true, false};
+
+        for (int i = 0; i < predicates.length; i++) {
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicates[i]));
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(json.toString(), false));
+        }
+
+    }
+
+    @Test
+    public void testCompletedContainers() throws Exception {
+
+        String json = "{\"header\": {\"type\": \"x\", \"big\": [1, {\"a\": [2]}, \"}\"]}, \"body\": {\"n\": [1, [2, 3], 4]}}";
+        String[] predicates = {
+                "@.header.type == \"x\" && @.body.n[1][0] == 2",
+                "@.header.big[0] == 1 && @.body.n[2] == 4",
+                "@.header.big[1].a[0] == 2 && @.header.type == \"x\" && @.body",
+                "@.header.type == \"y\" || @.body.n[3]"
+        };
+        boolean[] expected = {true, true, true, false};
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        String sequence = json + json + "\n" + json;
+        StringBuilder results = new StringBuilder();
+        JsonFilter.DocumentListener listener = (index, match) -> results.append(match ? "+" : "-");
+
+        for (int i = 0; i < predicates.length; i++) {
+            JsonPredicateComputer pc = SimpleExpressionParser.parseExpression(predicates[i]);
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc).apply(bytes, false));
+            for (int window = 8; window <= 24; window += 8) {
+                Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc, window).apply(json, false));
+            }
+            results.setLength(0);
+            new JsonFilter(pc).applySequence(sequence.getBytes(StandardCharsets.UTF_8), false, listener);
+            Assert.assertEquals(predicates[i], expected[i] ? "+++" : "---", results.toString());
+        }
+
+    }
+
+    @Test
+    public void testDuplicateNames() throws Exception {
+
+        // an object is only left early once its predicates are decided, a later duplicate may decide them
+        String[] predicates = {
+                "@.k >= 0",
+                "@.a.b == 2",
+                "@.o.x == @.y",
+                "@.o.k >= 0 && @.n == 1",
+                "@.k == 1"
+        };
+        String[] documents = {
+                "{\"k\": {\"a\": 1}, \"k\": 3.14}",
+                "{\"a\": {\"x\": 1}, \"a\": {\"b\": 2}}",
+                "{\"o\": {\"x\": 1}, \"o\": {\"x\": 2}, \"y\": 2}",
+                "{\"o\": {\"k\": [0], \"k\": 1}, \"n\": 1}",
+                "{\"k\": 2, \"k\": 1}"
+        };
+        // the first value of a name decides a comparison with a constant
+        boolean[] expected = {true, true, true, true, false};
+
+        for (int i = 0; i < predicates.length; i++) {
+            JsonPredicateComputer pc = SimpleExpressionParser.parseExpression(predicates[i]);
+            byte[] bytes = documents[i].getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc).apply(bytes, false));
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc).apply(documents[i], false));
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc, 8).apply(new ByteArrayInputStream(bytes), false));
+        }
+
+    }
+
+    @Test
+    public void testArrayJump() throws Exception {
+
+        StringBuilder json = new StringBuilder("{\"empty\": [], \"short\": [1, 2], \"items\": [");
+        for (int i = 0; i < 600; i++) {
+            if (i > 0) {
+                json.append(i % 7 == 0 ? ",\n" : ", ");
+            }
+            switch (i % 4) {
+                case 0:
+                    json.append("{\"price\": ").append(i).append(", \"s\": \"a, ]\\\"b\"}");
+                    break;
+                case 1:
+                    json.append("[").append(i).append(", [\",\"], {}]");
+                    break;
+                case 2:
+                    json.append("\",\\\\\"");
+                    break;
+                default:
+                    json.append(i);
+            }
+        }
+        json.append("]}");
+
+        String[] predicates = {
+                "@.items[500].price == 500 && @.items[599] == 599",
+                "@.items[3] == 3 && @.items[501][0] == 501 && @.items[502] == \",\\\\\"",
+                "@.short[1] == 2 && @.items[596].price == 596",
+                "@.empty[2] || @.short[5] || @.items[600]"
+        };
+        boolean[] expected = {true, true, true, false};
+
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        StructuralIndex index = new StructuralIndex().build(bytes);
+        for (int i = 0; i < predicates.length; i++) {
+            JsonPredicateComputer pc = SimpleExpressionParser.parseExpression(predicates[i]);
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc).apply(bytes, false));
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc).apply(bytes, index, false));
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc, 16).apply(json.toString(), false));
+            Assert.assertEquals(predicates[i], expected[i], new JsonFilter(pc).apply(json.toString(), true));
+        }
+
+        try {
+            new JsonFilter(SimpleExpressionParser.parseExpression("@.items[599] == 599")).apply("{\"items\": [1, \"x]", false);
+            Assert.fail();
+        } catch (IOException e) {
+            // unterminated
+        }
+
+    }
+
+    @Test
+    public void testSharedComputer() throws Exception {
+
+        JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("(@.a > 1 && @.b[1] == \"x\") || @.c");
+        byte[][] docs = {
+                "{\"a\": 2, \"b\": [0, \"x\"]}".getBytes(StandardCharsets.UTF_8),
+                "{\"a\": 2, \"b\": [0, \"y\"]}".getBytes(StandardCharsets.UTF_8),
+                "{\"b\": [], \"a\": 0, \"c\": null}".getBytes(StandardCharsets.UTF_8)
+        };
+        boolean[] expected = {true, false, true};
+
+        // two sessions fed in turn, byte by byte, keep apart
+        FilterSession first = new FilterSession(pc);
+        FilterSession second = new FilterSession(pc);
+        for (int i = 0; i < docs.length; i++) {
+            byte[] other = docs[(i + 1) % docs.length];
+            first.reset(false);
+            second.reset(false);
+            for (int b = 0; b < Math.max(docs[i].length, other.length); b++) {
+                if (b < docs[i].length) {
+                    first.feed(ByteBuffer.wrap(docs[i], b, 1));
+                }
+                if (b < other.length) {
+                    second.feed(ByteBuffer.wrap(other, b, 1));
+                }
+            }
+            Assert.assertEquals(expected[i] ? FilterSession.Status.MATCH : FilterSession.Status.NO_MATCH, first.finish());
+            Assert.assertEquals(expected[(i + 1) % docs.length] ? FilterSession.Status.MATCH : FilterSession.Status.NO_MATCH, second.finish());
+        }
+
+        Thread[] threads = new Thread[4];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    JsonFilter jf = new JsonFilter(pc);
+                    for (int n = 0; n < 20000; n++) {
+                        int i = n % docs.length;
+                        if (jf.apply(docs[i], false) != expected[i]) {
+                            throw new AssertionError("document " + i);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(String.valueOf(failure[0]), failure[0]);
+
+    }
+
+    @Test
+    public void testStateReuse() throws Exception {
+
+        // a document decided deep in arrays is followed by ones that need a clean state
+        JsonPredicateComputer pc = SimpleExpressionParser.parseExpression("@.a[2].b == 1 || (@.c > 0 && @.d[1][1])");
+        String[] docs = {
+                "{\"a\": [0, [1, 2], {\"b\": 1}, 3], \"c\": 1}",
+                "{\"c\": 1, \"d\": [[0], [0]], \"a\": [0]}",
+                "{\"d\": [0, [0, null]], \"c\": 2}",
+                "{\"a\": [0, 1, {\"b\": 2}], \"c\": 0, \"d\": [0, [0, 1]]}"
+        };
+        boolean[] expected = {true, false, true, false};
+
+        JsonFilter jf = new JsonFilter(pc);
+        JsonFilter windowed = new JsonFilter(pc, 8);
+        for (int n = 0; n < 1000; n++) {
+            int i = n % docs.length;
+            Assert.assertEquals("document " + n, expected[i], jf.apply(docs[i].getBytes(StandardCharsets.UTF_8), false));
+            Assert.assertEquals("document " + n, expected[i], windowed.apply(docs[i], false));
+        }
+
+    }
+
+    @Test
+    public void testNestedOperators() throws Exception {
+
+        String predicate = "(@.a == 1 || @.b == 2 || (@.c == 3 && @.d == 4)) && (@.e || (@.f == 5 && (@.g == 6 || @.h == 7)))";
+        String[] jsons = {
+                "{\"a\": 1, \"e\": 0}",
+                "{\"c\": 3, \"d\": 4, \"f\": 5, \"h\": 7}",
+                "{\"a\": 0, \"b\": 0, \"c\": 3, \"d\": 0, \"e\": 0}",
+                "{\"b\": 2, \"f\": 5, \"g\": 0}",
+                "{\"b\": 2, \"f\": 5, \"g\": 0, \"h\": 7}",
+                "{\"h\": 7, \"g\": 6, \"f\": 0, \"b\": 2}",
+                "{}"
+        };
+        boolean[] expected = {true, true, false, false, true, false, false};
+
+        JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicate));
+        for (int i = 0; i < jsons.length; i++) {
+            Assert.assertEquals(jsons[i], expected[i], jf.apply(jsons[i], true));
+            Assert.assertEquals(jsons[i], expected[i], jf.apply(jsons[i].getBytes(StandardCharsets.UTF_8), true));
+        }
+
+    }
+
+    @Test
+    public void testWideOperators() throws Exception {
+
+        StringBuilder or = new StringBuilder();
+        StringBuilder and = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            String separator = i == 0 ? "" : " || ";
+            or.append(separator).append("(@.k").append(i).append(" == ").append(i).append(" && @.m == 1)");
+            and.append(i == 0 ? "" : " && ").append("(@.k").append(i).append(" == ").append(i).append(" || @.m == 1)");
+        }
+        JsonFilter anyOf = new JsonFilter(SimpleExpressionParser.parseExpression(or.toString()));
+        JsonFilter allOf = new JsonFilter(SimpleExpressionParser.parseExpression(and.toString()));
+
+        StringBuilder all = new StringBuilder("{");
+        for (int i = 0; i < 300; i++) {
+            all.append("\"k").append(i).append("\": ").append(i).append(", ");
+        }
+        String matching = all + "\"m\": 0}";
+        Assert.assertFalse(anyOf.apply(matching, true));
+        Assert.assertTrue(allOf.apply(matching, true));
+        Assert.assertTrue(anyOf.apply("{\"m\": 1, \"k299\": 299}", true));
+        Assert.assertFalse(anyOf.apply("{\"m\": 1, \"k299\": 0}", true));
+        Assert.assertTrue(allOf.apply("{\"k0\": 1, \"m\": 1}", true));
+        Assert.assertFalse(allOf.apply("{\"k0\": 0, \"k1\": 0}", true));
+        Assert.assertFalse(allOf.apply("{\"m\": 0, \"k5\": 5}", true));
+
+    }
+
+    @Test
+    public void testNumberRepresentations() throws Exception {
+
+        String[] numbers = {
+                "0", "-0", "0.0", "1", "-1", "2", "2.0", "2.00", "20e-1", "0.2e1", "1e2", "100", "1E+2",
+                "123456789012345", "123456789012346", "1234567890123456", "123456789012345678",
+                "1234567890123456789", "-1234567890123456789", "9223372036854775807", "99999999999999999999",
+                "0.1", "0.10", "0.30000000000000004", "0.3", "1e-22", "1e-23", "1.5e22", "1.5e23",
+                "3.141592653589793", "3.14159265358979", "3.1415926535898", "-2.5", "-2.49999999999999"
+        };
+
+        for (String a : numbers) {
+            for (String b : numbers) {
+                BigDecimal x = new BigDecimal(a);
+                BigDecimal y = new BigDecimal(b);
+                NumberValue u = new NumberValue(a);
+                NumberValue v = new NumberValue(b);
+                Assert.assertEquals(a + " <> " + b, Integer.signum(x.compareTo(y)), Integer.signum(u.compareTo(v)));
+                Assert.assertEquals(a + " == " + b, x.equals(y), u.equalTo(v));
+                Assert.assertEquals(a, x, u.getValue());
+            }
+        }
+
+    }
+
+    @Test
+    public void testNumberTokens() throws Exception {
+
+        String json = "{\"l\": 42, \"n\": -7, \"d\": -0.25, \"e\": 1.5e3, \"big\": 123456789012345678901234567890, "
+                + "\"wide\": 9223372036854775807, \"z\": -0, \"a\": [1, 2.50, 3]}";
+        String[] predicates = {
+                "@.l == 42 && @.l > 41.99 && @.l < 42.01",
+                "@.n == -7 && @.n < -6.5",
+                "@.d == -0.25 && @.d > -0.3 && @.d < 0",
+                "@.e == 1.5e3 && @.e > 1499 && @.e < 1500.5",
+                "@.big == 123456789012345678901234567890 && @.big > 123456789012345678901234567889",
+                "@.wide == 9223372036854775807 && @.wide > 9223372036854775806.5",
+                "@.z == 0 && @.z >= 0 && @.z <= 0",
+                "@.a[1] == 2.50 && @.a[1] != 2.5 && @.a[1] > 2.49 && @.a[2] == 3"
+        };
+
+        for (String predicate : predicates) {
+            for (boolean specialized : new boolean[]{false, true}) {
+                JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicate, specialized));
+                Assert.assertTrue(predicate, jf.apply(json, true));
+                Assert.assertTrue(predicate, jf.apply(json.getBytes(StandardCharsets.UTF_8), true));
+            }
+        }
+
+    }
+
+    @Test
+    public void testStringsInPlace() throws Exception {
+
+        // literals as they stand in the document, and the strings they stand for
+        String[][] values = {
+                {"abc", "abc"}, {"abd", "abd"}, {"ab", "ab"}, {"abcd", "abcd"}, {"", ""},
+                {"a\\u0062c", "abc"}, {"a\\\"b", "a\"b"}, {"\u00e9t\u00e9", "\u00e9t\u00e9"},
+                {"\ue000", "\ue000"}, {"\ud83d\ude00", "\ud83d\ude00"}, {"\ud83d\ude00x", "\ud83d\ude00x"}
+        };
+        String[] constants = {"abc", "ab", "abcd", "", "\u00e9t\u00e9", "\ue000", "\ud83d\ude00"};
+        String[] operators = {">", ">=", "==", "!=", "<=", "<"};
+
+        for (String constant : constants) {
+            for (String operator : operators) {
+                String predicate = "@.s " + operator + " \"" + constant + "\"";
+                JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicate));
+                for (String[] value : values) {
+                    int comparison = value[1].compareTo(constant);
+                    boolean expected = operator.equals(">") ? comparison > 0 : operator.equals(">=") ? comparison >= 0
+                            : operator.equals("==") ? comparison == 0 : operator.equals("!=") ? comparison != 0
+                            : operator.equals("<=") ? comparison <= 0 : comparison < 0;
+                    String json = "{\"s\": \"" + value[0] + "\"}";
+                    Assert.assertEquals(predicate + " on " + json, expected, jf.apply(json, true));
+                    Assert.assertEquals(predicate + " on " + json, expected, jf.apply(json.getBytes(StandardCharsets.UTF_8), true));
+                }
+                Assert.assertEquals(predicate, operator.equals("!="), jf.apply("{\"s\": 1}", true));
+            }
+        }
+
+    }
+
+    @Test
+    public void testMalformedStrings() throws Exception {
+
+        // documents spelled in ISO-8859-1 so that every char stands for one byte
+        String[][] cases = {
+                {"{\"a\":\"\u00ff\"}", "@.a == \"\ufffd\""},
+                {"{\"a\":\"\u00c3\"}", "@.a < \"\ufffd\""},
+                {"{\"a\":\"x\u00c0\u00afy\"}", "@.a != \"x\""},
+                {"{\"a\":\"\u00ed\u00a0\u0080\"}", "@.a != \"\""},
+                {"{\"a\":\"\\n\u00e9\"}", "@.a == \"\\n\ufffd\""},
+                {"{\"\u00ff\":1}", "@.\"\ufffd\" == 1"},
+                {"{\"a\u00c3\":1}", "@.a == 1"}
+        };
+
+        for (String[] c : cases) {
+            byte[] bytes = c[0].getBytes(StandardCharsets.ISO_8859_1);
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(c[1]));
+            for (boolean lenient : new boolean[]{false, true}) {
+                try {
+                    jf.apply(bytes, lenient);
+                    Assert.fail(c[1] + " on " + c[0]);
+                } catch (MalformedInputException expected) {
+                    // as when decoded
+                }
+                try {
+                    jf.apply(new ByteArrayInputStream(bytes), lenient);
+                    Assert.fail(c[1] + " on " + c[0]);
+                } catch (MalformedInputException expected) {
+                    // the same bytes
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testLongStrings() throws Exception {
+
+        StringBuilder blob = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            blob.append((char) ('A' + i % 26));
+        }
+        String b = blob.toString();
+        String escaped = b.substring(0, 5000) + "\\u0041\\n" + b.substring(5000);
+        String decoded = b.substring(0, 5000) + "A\n" + b.substring(5000);
+        String json = "{\"b\": \"" + b + "\", \"e\": \"" + escaped + "\", \"last\": 1}";
+
+        String[] predicates = {
+                "@.b == \"" + b + "\"",
+                "@.b != \"" + b.substring(0, 19999) + "\"",
+                "@.b > \"" + b.substring(0, 19999) + "\"",
+                "@.b < \"" + b + "A\"",
+                "@.b > \"" + b.substring(0, 100) + "Z\" && @.last == 1",
+                "@.b < \"B\" && @.last == 1",
+                "@.e == \"" + decoded.replace("\n", "\\n") + "\"",
+                "@.e > \"" + b + "\" && @.e != \"" + b + "\""
+        };
+        boolean[] expected = {true, true, true, true, false, true, true, false};
+
+        for (int i = 0; i < predicates.length; i++) {
+            JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression(predicates[i]), 256);
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(new ByteArrayInputStream(bytes), false));
+            Assert.assertEquals(predicates[i], expected[i], jf.apply(json, false));
+
+            FilterSession session = new FilterSession(SimpleExpressionParser.parseExpression(predicates[i]), 256);
+            for (int off = 0; off < bytes.length && session.getStatus() == FilterSession.Status.NEED_MORE; off += 1000) {
+                session.feed(ByteBuffer.wrap(bytes, off, Math.min(1000, bytes.length - off)));
+            }
+            Assert.assertEquals(predicates[i], expected[i] ? FilterSession.Status.MATCH : FilterSession.Status.NO_MATCH, session.finish());
+        }
+
+    }
+
+    @Test
+    public void testIntegerConstants() throws Exception {
+
+        String[] literals = {"5", "-5", "0", "4", "6", "5.0", "4.99", "5.01", "1e1", "123456789012345678901234567890",
+                "-123456789012345678901234567890", "9223372036854775807", "\"5\"", "true", "null"};
+        Value[] values = new Value[literals.length];
+        for (int i = 0; i < literals.length - 3; i++) {
+            values[i] = new NumberValue(literals[i]);
+        }
+        values[literals.length - 3] = new StringValue("5");
+        values[literals.length - 2] = BooleanValue.forValue(true);
+        values[literals.length - 1] = NullValue.INSTANCE;
+
+        for (String constant : new String[]{"5", "-5", "0", "9223372036854775807"}) {
+            NumberValue c = new NumberValue(constant);
+            for (String key : new String[]{">", ">=", "==", "!=", "<=", "<"}) {
+                ValueOperator operator = ValueOperator.forKey(key);
+                JsonFilter left = new JsonFilter(SimpleExpressionParser.parseExpression("@.v " + key + " " + constant));
+                JsonFilter right = new JsonFilter(SimpleExpressionParser.parseExpression(constant + " " + key + " @.v"));
+                for (int i = 0; i < literals.length; i++) {
+                    String json = "{\"v\": " + literals[i] + "}";
+                    String message = literals[i] + " " + key + " " + constant;
+                    Assert.assertEquals(message, operator.getComputer().compare(values[i], c), left.apply(json, true));
+                    Assert.assertEquals(message, operator.getComputer().compare(c, values[i]), right.apply(json, true));
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testSpecializedComparisons() throws Exception {
+
+        String[] jsons = {
+                "{\"s\": \"b\", \"n\": 2, \"t\": true, \"z\": null}",
+                "{\"s\": \"a\", \"n\": 2.0, \"t\": false, \"z\": 0}",
+                "{\"s\": 1, \"n\": \"2\", \"t\": null, \"z\": \"null\"}",
+                "{}"
+        };
+        String[] constants = {"\"b\"", "2", "true", "false", "null"};
+        String[] operators = {">", ">=", "==", "!=", "<=", "<"};
+
+        for (String path : new String[]{"@.s", "@.n", "@.t", "@.z"}) {
+            for (String constant : constants) {
+                for (String operator : operators) {
+                    for (String predicate : new String[]{
+                            path + " " + operator + " " + constant,
+                            constant + " " + operator + " " + path,
+                            path + " " + operator + " " + constant + " || @.n == 3"}) {
+                        JsonFilter interpreted = new JsonFilter(SimpleExpressionParser.parseExpression(predicate));
+                        JsonFilter specialized = new JsonFilter(SimpleExpressionParser.parseExpression(predicate, true));
+                        for (String json : jsons) {
+                            Assert.assertEquals(predicate + " on " + json, interpreted.apply(json, true), specialized.apply(json, true));
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testBufferSlices() throws Exception {
+
+        byte[] doc = UNICODE_OBJECT.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[doc.length + 10];
+        Arrays.fill(frame, (byte) '}');
+        System.arraycopy(doc, 0, frame, 5, doc.length);
+
+        JsonFilter jf = new JsonFilter(SimpleExpressionParser.parseExpression("@.n == 12.5 && @.esc == \"a\u00e9\\n\\\"b\""));
+
+        Assert.assertEquals(true, jf.apply(frame, 5, doc.length, false));
+
+        ByteBuffer heap = ByteBuffer.wrap(frame, 5, doc.length).slice();
+        Assert.assertEquals(true, jf.apply(heap, false));
+        Assert.assertEquals(0, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+        direct.put(frame).position(5);
+        direct.limit(5 + doc.length);
+        Assert.assertEquals(true, jf.apply(direct, false));
+        Assert.assertEquals(5, direct.position());
+
+        for (int split = 0; split <= doc.length; split++) {
+            ByteBuffer[] parts = {
+                    ByteBuffer.wrap(doc, 0, split),
+                    ByteBuffer.allocate(0),
+                    ByteBuffer.wrap(doc, split, Math.min(3, doc.length - split)),
+                    ByteBuffer.wrap(doc, split + Math.min(3, doc.length - split), doc.length - split - Math.min(3, doc.length - split))
+            };
+            Assert.assertEquals("split " + split, true, jf.apply(parts, false));
+            Assert.assertEquals(0, parts[0].position());
+            Assert.assertEquals(split, parts[2].position());
+        }
+
+    }
+
+    @Test
+    public void testLongCharSequence() throws Exception {
+
+        StringBuilder sb = new StringBuilder("{\"type\": \"a\", \"items\": [");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i == 0 ? "" : ", ").append("{\"id\": ").append(i).append('}');
+        }
+        sb.append("], \"last\": 7}");
+
+        JsonFilter early = new JsonFilter(SimpleExpressionParser.parseExpression("@.type == \"a\""), 64);
+        JsonFilter late = new JsonFilter(SimpleExpressionParser.parseExpression("@.last == 7"), 64);
+
+        Assert.assertEquals(true, early.apply(sb.toString(), false));
+        Assert.assertEquals(true, late.apply(sb.toString(), false));
+        Assert.assertEquals(true, late.apply(sb.toString(), false));
+
+    }
+
     @Test
     public void testLeftPredicate() throws Exception {
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.predicate;
+
+import com.github.aadavydov.fastjsonquery.filter.JsonPredicateComputer;
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueOperator;
+import com.github.aadavydov.fastjsonquery.filter.computer.struct.PredicateOperator;
+import com.github.aadavydov.fastjsonquery.filter.value.NumberValue;
+import com.github.aadavydov.fastjsonquery.filter.value.Value;
+import com.github.aadavydov.fastjsonquery.filter.variable.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class PredicateProgramTest {
+
+    @Test
+    public void testForeignImplementations() throws Exception {
+
+        Predicate predicate = new Predicate() {
+            private ComplexPredicate parent;
+
+            @Override
+            public ComplexPredicate getParent() {
+                return parent;
+            }
+
+            @Override
+            public void setParent(ComplexPredicate parent) {
+                this.parent = parent;
+            }
+
+            @Override
+            public int getId() {
+                return 0;
+            }
+
+            @Override
+            public boolean getNeedToBeCalculated(PredicateState state) {
+                return false;
+            }
+
+            @Override
+            public boolean getPredicateValue(PredicateState state) {
+                return false;
+            }
+
+            @Override
+            public void toDefaultIfNotCalculated(PredicateState state) {
+            }
+        };
+        PathValueReciever reciever = new PathValueReciever() {
+            @Override
+            public void setValue(PredicateState state, Value value) {
+            }
+
+            @Override
+            public Path getPath() {
+                return new Path("a");
+            }
+        };
+        PathVisitor visitor = new PathVisitor() {
+            @Override
+            public void visitPath(PredicateState state) {
+            }
+
+            @Override
+            public Path getPath() {
+                return new Path("a");
+            }
+        };
+
+        ComplexPredicate withPredicate = new ComplexPredicate(PredicateOperator.AND);
+        withPredicate.addChild(new LeftPredicate(new Operand("a"), new NumberValue("1"), ValueOperator.EQ));
+        withPredicate.addChild(predicate);
+        Predicate withReciever = new LeftPredicate(new Operand("a"), new NumberValue("1"), ValueOperator.EQ) {
+            @Override
+            public void exportValueRecievers(List<PathValueReciever> list) {
+                list.add(reciever);
+            }
+        };
+        Predicate withVisitor = new LeftPredicate(new Operand("a"), new NumberValue("1"), ValueOperator.EQ) {
+            @Override
+            public void exportVisitors(List<PathVisitor> list) {
+                list.add(visitor);
+            }
+        };
+
+        for (Predicate tree : new Predicate[]{withPredicate, withReciever, withVisitor}) {
+            try {
+                PredicateProgram.compile(tree);
+                Assert.fail();
+            } catch (IllegalArgumentException expected) {
+                // rather than a ClassCastException
+            }
+            try {
+                new JsonPredicateComputer(tree);
+                Assert.fail();
+            } catch (IllegalArgumentException expected) {
+                // the same check
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021-2021. Andrey Davydov (andrey.davydov@gmail.com; https://github.com/a-a-davydov)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ *
+ *
+ */
+
+package com.github.aadavydov.fastjsonquery.filter.predicate;
+
+import com.github.aadavydov.fastjsonquery.filter.computer.op.ValueOperator;
+import com.github.aadavydov.fastjsonquery.filter.computer.struct.PredicateOperator;
+import com.github.aadavydov.fastjsonquery.filter.value.NumberValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PredicateStateTest {
+
+    @Test
+    public void testEpochWrap() throws Exception {
+
+        // (@[0] > 3 && @[1] > 3) || @[2] > 3
+        Operand[] operands = {new Operand("[0]"), new Operand("[1]"), new Operand("[2]")};
+        ComplexPredicate and = new ComplexPredicate(PredicateOperator.AND);
+        and.addChild(new LeftPredicate(operands[0], new NumberValue("3"), ValueOperator.GT));
+        and.addChild(new LeftPredicate(operands[1], new NumberValue("3"), ValueOperator.GT));
+        ComplexPredicate or = new ComplexPredicate(PredicateOperator.OR);
+        or.addChild(and);
+        or.addChild(new LeftPredicate(operands[2], new NumberValue("3"), ValueOperator.GT));
+
+        PredicateState state = PredicateProgram.compile(or).newState();
+        Assert.assertTrue(evaluate(or, operands, state, 5, 5, 0));
+
+        // the next reset wraps, to the epoch the slots of the first evaluation carry
+        state.setEpoch(-1);
+        for (int n = 0; n < 8; n++) {
+            state.reset();
+            if (n % 2 == 0) {
+                Assert.assertFalse("evaluation " + n, evaluate(or, operands, state, 5, 0, 0));
+            } else {
+                Assert.assertTrue("evaluation " + n, evaluate(or, operands, state, 0, 0, 5));
+            }
+        }
+
+    }
+
+    private static boolean evaluate(Predicate tree, Operand[] operands, PredicateState state, int... values) {
+        for (int i = 0; i < values.length && tree.getNeedToBeCalculated(state); i++) {
+            operands[i].setValue(state, new NumberValue(Integer.toString(values[i])));
+        }
+        tree.toDefaultIfNotCalculated(state);
+        return tree.getPredicateValue(state);
+    }
+
+}